@@ -0,0 +1,83 @@
+import bench.HoleFillingWorkload;
+
+import java.util.List;
+
+/**
+ * implementation of the benchmarked operations, see bench.HoleFillingWorkload
+ */
+public class HoleFillingWorkloadImpl implements HoleFillingWorkload {
+    private static final long IMAGE_SEED = 1;
+
+    private Raster raster;
+    private Index[] missingPixels;
+    private List<Hole> holes;
+    private long[][] perimeters;
+
+    @Override
+    public void setUp(int imageSize, String shape, int holeSize) {
+        raster = MockUtils.getMockImage(imageSize, imageSize, IMAGE_SEED);
+
+        int top = (imageSize - holeSize) / 2;
+        switch (shape) {
+            case "square":
+                missingPixels = MockUtils.getMockSquareHole(new Index(top, top), holeSize, holeSize);
+                break;
+            case "disc":
+                missingPixels = MockUtils.getMockDiscHole(new Index(imageSize / 2, imageSize / 2), holeSize / 2);
+                break;
+            case "scratch":
+                // 3 pixels thick, with the same area as the other shapes as long as it fits in the image
+                int length = Math.min(holeSize * holeSize / 3, imageSize - 8);
+                missingPixels = MockUtils.getMockScratchHole(new Index(4, 4), length, 3);
+                break;
+            case "many":
+                missingPixels = MockUtils.getMockHoleGrid(new Index(top, top), holeSize, holeSize, 4);
+                break;
+            default:
+                throw new IllegalArgumentException("unknown shape " + shape);
+        }
+        MockUtils.setMockHole(raster, missingPixels);
+
+        holes = Utils.findHoles(raster);
+        perimeters = new long[holes.size()][];
+        for (int i = 0; i < holes.size(); i++) {
+            perimeters[i] = Utils.getOuterPerimeter(raster, holes.get(i));
+        }
+    }
+
+    @Override
+    public Object findHole() {
+        return Utils.findHole(raster);
+    }
+
+    @Override
+    public Object findHoles() {
+        return Utils.findHoles(raster);
+    }
+
+    @Override
+    public Object followHolePerimeter() {
+        return Utils.followHolePerimeter(raster, getStart(holes.get(0)));
+    }
+
+    @Override
+    public void fillHole() {
+        for (Hole hole: holes) {
+            Utils.fillHole(raster, hole, Defs.Z_DEF, Defs.EPSILON);
+        }
+    }
+
+    @Override
+    public void fillHoleCircular() {
+        // the circular algorithm relies on the missing pixels, so the hole is set again before every fill
+        MockUtils.setMockHole(raster, missingPixels);
+        for (long[] perimeter: perimeters) {
+            Utils.fillHoleCircular(raster, perimeter);
+        }
+    }
+
+    private static Index getStart(Hole hole) {
+        long first = hole.getPackedMissingPixels()[0];
+        return new Index(Index.rowOf(first), Index.colOf(first));
+    }
+}
@@ -0,0 +1,75 @@
+package bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of hole detection, perimeter following, and the fill algorithms of sections 2 and 5,
+ * on synthetic images (see MockUtils.getMockImage()), so they run without any input.
+ * every benchmark method runs in its own trial, with a new image, see HoleFillingWorkload.
+ *
+ * run with: ant bench -Djmh.dir=<dir of the JMH jars> [-Dbench.args="<JMH arguments>"], e.g
+ * -Dbench.args="fillHole -p holeSize=10,50 -rf json" to run only some of the benchmarks and save the results
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoleFillingBenchmark {
+
+    @Param({"10", "50", "100", "500"})
+    private int holeSize;
+
+    @Param({"square", "disc", "scratch", "many"})
+    private String shape;
+
+    @Param({"512", "2048"})
+    private int imageSize;
+
+    private HoleFillingWorkload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        workload = HoleFillingWorkload.create();
+        workload.setUp(imageSize, shape, holeSize);
+    }
+
+    @Benchmark
+    public Object findHole() {
+        return workload.findHole();
+    }
+
+    @Benchmark
+    public Object findHoles() {
+        return workload.findHoles();
+    }
+
+    @Benchmark
+    public Object followHolePerimeter() {
+        return workload.followHolePerimeter();
+    }
+
+    @Benchmark
+    public void fillHole() {
+        workload.fillHole();
+    }
+
+    @Benchmark
+    public void fillHoleCircular() {
+        workload.fillHoleCircular();
+    }
+}
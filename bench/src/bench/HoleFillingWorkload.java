@@ -0,0 +1,33 @@
+package bench;
+
+/**
+ * the operations which are benchmarked by HoleFillingBenchmark, on a synthetic image with a mock hole.
+ *
+ * JMH requires the benchmarks to be in a named package, while the project's classes are in the default package,
+ * which can't be referenced from a named package. so the operations are implemented by the default package class
+ * HoleFillingWorkloadImpl, which is created once per trial, see create()
+ */
+public interface HoleFillingWorkload {
+
+    /**
+     * creates the image and sets the mock hole in it
+     * @param imageSize height and width of the image
+     * @param shape shape of the hole: square, disc, scratch or many (a grid of small square holes)
+     * @param holeSize the hole covers about holeSize x holeSize pixels
+     */
+    void setUp(int imageSize, String shape, int holeSize);
+
+    Object findHole();
+
+    Object findHoles();
+
+    Object followHolePerimeter();
+
+    void fillHole();
+
+    void fillHoleCircular();
+
+    static HoleFillingWorkload create() throws ReflectiveOperationException {
+        return (HoleFillingWorkload) Class.forName("HoleFillingWorkloadImpl").getDeclaredConstructor().newInstance();
+    }
+}
@@ -0,0 +1,342 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * fills the holes in many images, as a pipeline of 4 stages: decode -> detect -> fill -> encode.
+ * every stage has its own thread pool, and the stages are connected by bounded queues, so while one image is filled
+ * the next ones are decoded and the previous ones are encoded, and at most Defs.BATCH_QUEUE_DEPTH decoded images
+ * wait between every two stages.
+ *
+ * every image is decoded once, to a single raster, which is filled in place and then encoded.
+ * the missing pixels of an image are taken from a mask image (a pixel is missing where the mask is brighter than
+ * its middle gray), or the mock hole (see Defs) is set in case there is no mask
+ */
+public class BatchRunner {
+
+    private static final String[] IMG_TYPES = {"jpg", "jpeg", "png", "bmp", "gif"};
+    private static final String MASK_SUFFIX = "_mask";
+    private static final String FILLED_SUFFIX = "_filled";
+
+    // marks the end of the input in a queue, see Stage
+    private static final Job END = new Job(null, null);
+
+    /**
+     * an image which flows through the stages
+     */
+    private static class Job {
+        private final Path imgPath;
+        private final Path maskPath;
+        private Raster raster;
+        private ColorRaster colorRaster;
+        private List<Hole> holes;
+        // packed locations of the missing pixels, in case the image is filled with a fill plan
+        private long[] mask;
+
+        Job(Path img, Path mask) {
+            imgPath = img;
+            maskPath = mask;
+        }
+    }
+
+    /**
+     * a stage of the pipeline, runs body on every job of its input queue, with the given number of threads,
+     * and passes it to the output queue. a job which fails is logged, counted in failed, and dropped
+     */
+    private static class Stage {
+        private final String name;
+        private final ExecutorService pool;
+        private final AtomicInteger running;
+        private final AtomicInteger failed;
+
+        Stage(String stageName, int threads, BlockingQueue<Job> in, BlockingQueue<Job> out, JobBody body,
+              AtomicInteger failedJobs) {
+            name = stageName;
+            pool = Executors.newFixedThreadPool(threads);
+            running = new AtomicInteger(threads);
+            failed = failedJobs;
+            for (int i = 0; i < threads; i++) {
+                pool.execute(() -> work(in, out, body));
+            }
+        }
+
+        private void work(BlockingQueue<Job> in, BlockingQueue<Job> out, JobBody body) {
+            try {
+                while (true) {
+                    Job job = in.take();
+                    if (job == END) {
+                        // let the other threads of this stage see the end too, the last one passes it on
+                        in.put(END);
+                        if (running.decrementAndGet() == 0 && out != null) {
+                            out.put(END);
+                        }
+                        return;
+                    }
+                    try {
+                        body.run(job);
+                        if (out != null) {
+                            out.put(job);
+                        }
+                    } catch (Throwable e) {
+                        // errors as well, e.g an image which doesn't fit in the heap, otherwise the thread would die
+                        // before passing the end on, and the next stage would wait for it forever
+                        failed.incrementAndGet();
+                        System.out.println("Error: " + name + " " + job.imgPath + ": " + e.getMessage());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void await() throws InterruptedException {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+    }
+
+    private interface JobBody {
+        void run(Job job) throws Exception;
+    }
+
+    /**
+     * fills the holes in all the images of the given input, and writes them to outputDir as <name>_filled.<type>
+     * @param input a directory of images, in which the mask of an image, if exists, is named <name>_mask.<type>,
+     *              or a manifest file, in which every line holds the path of an image, and optionally the path of
+     *              its mask, separated by white space (relative paths are relative to the manifest's directory)
+     * @param outputDir directory to write the filled images to
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param fillThreads number of threads of the fill stage, every one fills a single image at a time
+     * @param ioThreads number of threads of each of the decode, detect and encode stages
+     * @param queueDepth capacity of the queues between the stages
+     * @return number of images which were filled
+     * @throws IOException in case the input can't be listed
+     * @throws InterruptedException in case the calling thread is interrupted
+     */
+    public static int run(Path input, Path outputDir, int alg, int z, double eps, int fillThreads, int ioThreads,
+                          int queueDepth) throws IOException, InterruptedException {
+        List<Job> jobs = Files.isDirectory(input) ? listDir(input) : readManifest(input);
+        AtomicInteger failed = new AtomicInteger();
+
+        BlockingQueue<Job> toDecode = new LinkedBlockingQueue<>(jobs);
+        toDecode.put(END);
+        BlockingQueue<Job> toDetect = new ArrayBlockingQueue<>(queueDepth);
+        BlockingQueue<Job> toFill = new ArrayBlockingQueue<>(queueDepth);
+        BlockingQueue<Job> toEncode = new ArrayBlockingQueue<>(queueDepth);
+
+        Stage[] stages = {
+                new Stage("decode", ioThreads, toDecode, toDetect, job -> decode(job, alg), failed),
+                new Stage("detect", ioThreads, toDetect, toFill, job -> detect(job, alg), failed),
+                new Stage("fill", fillThreads, toFill, toEncode, job -> fill(job, alg, z, eps), failed),
+                new Stage("encode", ioThreads, toEncode, null, job -> encode(job, outputDir), failed)
+        };
+        for (Stage s: stages) {
+            s.await();
+        }
+        return jobs.size() - failed.get();
+    }
+
+    /**
+     * @return true if the images are filled with fill plans of their masks, see Defs.FILL_PLANS
+     */
+    static boolean usePlans(int alg) {
+        return Defs.FILL_PLANS && !Defs.COLOR && (alg == 0 || alg == 5);
+    }
+
+    /**
+     * decodes the image of the job (in grayscale, or in color if Defs.COLOR is set) and sets its missing pixels
+     */
+    private static void decode(Job job, int alg) throws IOException {
+        long start = Defs.METRICS.startTime();
+        BufferedImage img = read(job.imgPath);
+        BufferedImage mask = job.maskPath != null ? read(job.maskPath) : null;
+        Defs.METRICS.addTime(Metrics.LOAD, start);
+
+        start = Defs.METRICS.startTime();
+        Index[] missingPixels = getMissingPixels(mask != null ? Utils.toGray(mask) : null, img.getHeight(),
+                img.getWidth());
+        if (Defs.COLOR) {
+            job.colorRaster = ColorRaster.fromImg(img);
+            MockUtils.setMockHole(job.colorRaster, missingPixels);
+        } else {
+            job.raster = Utils.toGray(img);
+            MockUtils.setMockHole(job.raster, missingPixels);
+            if (usePlans(alg)) {
+                job.mask = Index.pack(missingPixels);
+            }
+        }
+        Defs.METRICS.addTime(Metrics.CONVERT, start);
+    }
+
+    private static void detect(Job job, int alg) {
+        // the plan of the mask holds its holes
+        if (usePlans(alg)) {
+            return;
+        }
+        long start = Defs.METRICS.startTime();
+        job.holes = Defs.COLOR ? Utils.findHoles(job.colorRaster, 1) : Utils.findHoles(job.raster, 1);
+        Defs.METRICS.addTime(Metrics.HOLE_DETECTION, start);
+    }
+
+    private static void fill(Job job, int alg, int z, double eps) throws IOException {
+        long start = Defs.METRICS.startTime();
+        if (usePlans(alg)) {
+            FillPlan plan = FillPlan.get(job.raster.getHeight(), job.raster.getWidth(), job.mask, alg, z, eps, 1);
+            plan.apply(job.raster, 1);
+            Defs.METRICS.addTime(Metrics.FILL, start);
+            // a plan which exceeds Defs.FILL_PLAN_MAX_ENTRIES leaves out boundary pixels, as algorithm 5 does
+            Defs.METRICS.addMax(Metrics.NEGLECTED_WEIGHT_PPM, Math.round(plan.getNeglectedWeight() * 1e6));
+            Defs.METRICS.addCount(Metrics.MISSING_PIXELS, job.mask.length);
+            Defs.METRICS.addCount(Metrics.IMAGES, 1);
+            return;
+        }
+        if (Defs.COLOR) {
+            Utils.fillHoles(job.colorRaster, job.holes, alg, z, eps, 1);
+        } else {
+            Utils.fillHoles(job.raster, job.holes, alg, z, eps, 1);
+        }
+        Defs.METRICS.addTime(Metrics.FILL, start);
+        Defs.METRICS.addHoleCounts(job.holes, alg);
+        Defs.METRICS.addCount(Metrics.IMAGES, 1);
+    }
+
+    private static void encode(Job job, Path outputDir) throws IOException {
+        String name = job.imgPath.getFileName().toString();
+        String type = getType(name);
+        String stem = name.substring(0, name.length() - type.length() - 1);
+        File output = outputDir.resolve(stem + FILLED_SUFFIX + "." + type).toFile();
+        long start = Defs.METRICS.startTime();
+        BufferedImage img = Defs.COLOR ? job.colorRaster.toImg() : job.raster.toGrayImg();
+        Defs.METRICS.addTime(Metrics.CONVERT, start);
+        Utils.writeImg(img, type, output);
+
+        // release the image as soon as possible, the job object itself may still be referenced by a queue
+        job.raster = null;
+        job.colorRaster = null;
+        job.holes = null;
+        job.mask = null;
+    }
+
+    /**
+     * returns the missing pixels of an image of the given size, the ones of its mask or the mock hole
+     * @param mask grayscale raster of the mask image, or null for the mock hole (see Defs)
+     * @param height height of the image
+     * @param width width of the image
+     * @return locations of the missing pixels
+     * @throws IllegalArgumentException in case the mask's size differs from the image's, or the mock hole isn't
+     * inside the image
+     */
+    static Index[] getMissingPixels(Raster mask, int height, int width) {
+        if (mask != null) {
+            if (mask.getHeight() != height || mask.getWidth() != width) {
+                throw new IllegalArgumentException(String.format("the mask is %dx%d and the image is %dx%d",
+                        mask.getWidth(), mask.getHeight(), width, height));
+            }
+            return getMaskPixels(mask);
+        }
+        if (Defs.MOCK_HOLE_START_ROW < 0 || Defs.MOCK_HOLE_START_COL < 0 ||
+                Defs.MOCK_HOLE_START_ROW + Defs.MOCK_HOLE_HEIGHT > height ||
+                Defs.MOCK_HOLE_START_COL + Defs.MOCK_HOLE_WIDTH > width) {
+            throw new IllegalArgumentException(String.format("the mock hole isn't inside the %dx%d image",
+                    width, height));
+        }
+        return MockUtils.getMockSquareHole(new Index(Defs.MOCK_HOLE_START_ROW, Defs.MOCK_HOLE_START_COL),
+                Defs.MOCK_HOLE_HEIGHT, Defs.MOCK_HOLE_WIDTH);
+    }
+
+    /**
+     * @param mask grayscale raster of a mask image
+     * @return locations of the pixels which are brighter than middle gray
+     */
+    static Index[] getMaskPixels(Raster mask) {
+        List<Index> pixels = new ArrayList<>();
+        for (int i = 0; i < mask.getHeight(); i++) {
+            for (int j = 0; j < mask.getWidth(); j++) {
+                if (mask.get(i, j) >= 128) {
+                    pixels.add(new Index(i, j));
+                }
+            }
+        }
+        return pixels.toArray(new Index[pixels.size()]);
+    }
+
+    private static List<Job> listDir(Path dir) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        File[] files = dir.toFile().listFiles();
+        if (files == null) {
+            throw new IOException("can't list directory " + dir);
+        }
+        Arrays.sort(files);
+        for (File f: files) {
+            String name = f.getName();
+            String type = getType(name);
+            if (!f.isFile() || !isImgType(type)) {
+                continue;
+            }
+            String stem = name.substring(0, name.length() - type.length() - 1);
+            if (stem.endsWith(MASK_SUFFIX) || stem.endsWith(FILLED_SUFFIX)) {
+                continue;
+            }
+            Path mask = null;
+            for (String t: IMG_TYPES) {
+                Path p = dir.resolve(stem + MASK_SUFFIX + "." + t);
+                if (Files.isRegularFile(p)) {
+                    mask = p;
+                    break;
+                }
+            }
+            jobs.add(new Job(f.toPath(), mask));
+        }
+        return jobs;
+    }
+
+    private static List<Job> readManifest(Path manifest) throws IOException {
+        List<Job> jobs = new ArrayList<>();
+        Path base = manifest.toAbsolutePath().getParent();
+        for (String line: Files.readAllLines(manifest)) {
+            String[] paths = line.trim().split("\\s+");
+            if (paths[0].isEmpty() || paths[0].startsWith("#")) {
+                continue;
+            }
+            jobs.add(new Job(base.resolve(paths[0]), paths.length > 1 ? base.resolve(paths[1]) : null));
+        }
+        return jobs;
+    }
+
+    private static BufferedImage read(Path path) throws IOException {
+        BufferedImage img = ImageIO.read(path.toFile());
+        if (img == null) {
+            throw new IOException("can't decode " + path);
+        }
+        return img;
+    }
+
+    private static String getType(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(dot + 1);
+    }
+
+    private static boolean isImgType(String type) {
+        for (String t: IMG_TYPES) {
+            if (t.equalsIgnoreCase(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
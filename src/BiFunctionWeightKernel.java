@@ -0,0 +1,51 @@
+import org.opencv.core.MatOfDouble;
+
+import java.util.function.BiFunction;
+
+/**
+ * adapts a weights function which is given as BiFunction<Index, Index[], MatOfDouble> (the missing pixel and all
+ * the boundary pixels in, a matrix of the weights out) to WeightKernel.
+ * the Index objects of the boundary pixels are created once for every boundary arrays the kernel is called with
+ */
+public class BiFunctionWeightKernel implements WeightKernel {
+    private final BiFunction<Index, Index[], MatOfDouble> weightFunc;
+
+    // the last boundary arrays which were converted, and their Index objects
+    private volatile Boundaries last;
+
+    private static class Boundaries {
+        private final int[] rows;
+        private final int[] cols;
+        private final Index[] idxs;
+
+        Boundaries(int[] r, int[] c, int n) {
+            rows = r;
+            cols = c;
+            idxs = new Index[n];
+            for (int i = 0; i < n; i++) {
+                idxs[i] = new Index(r[i], c[i]);
+            }
+        }
+    }
+
+    public BiFunctionWeightKernel(BiFunction<Index, Index[], MatOfDouble> f) {
+        weightFunc = f;
+    }
+
+    @Override
+    public double weight(int row, int col, int boundaryRow, int boundaryCol) {
+        double[] w = new double[1];
+        weights(row, col, new int[]{boundaryRow}, new int[]{boundaryCol}, 1, w);
+        return w[0];
+    }
+
+    @Override
+    public void weights(int row, int col, int[] boundaryRows, int[] boundaryCols, int n, double[] out) {
+        Boundaries b = last;
+        if (b == null || b.rows != boundaryRows || b.cols != boundaryCols || b.idxs.length != n) {
+            b = new Boundaries(boundaryRows, boundaryCols, n);
+            last = b;
+        }
+        weightFunc.apply(new Index(row, col), b.idxs).get(0, 0, out);
+    }
+}
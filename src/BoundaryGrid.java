@@ -0,0 +1,311 @@
+import java.util.Arrays;
+
+/**
+ * a uniform grid over the boundary pixels of a hole, which is used to fill a missing pixel only from the boundary
+ * pixels near it: within a radius, or its k nearest.
+ *
+ * with the default weights function 1 / (d^z + eps), the weight of a far boundary pixel is negligible, so on long thin
+ * holes (e.g scratches), where there are many boundary pixels but every missing pixel is close only to a few of them,
+ * the fill costs about O(n) instead of O(n * m).
+ * the weights of the neglected pixels are bounded: every one of them is farther than D (the radius, or the distance
+ * of the k-th nearest pixel), so their total weight is at most (m - included) / (D^z + eps), see getPixelFilling()
+ */
+public class BoundaryGrid {
+    private final BoundarySamples samples;
+    private final int cellSize;
+    private final int top;
+    private final int left;
+    private final int rows;
+    private final int cols;
+
+    // the indices (in samples) of the pixels of cell c are cellPixels[cellStart[c] .. cellStart[c + 1])
+    private final int[] cellStart;
+    private final int[] cellPixels;
+
+    /**
+     * @param b the boundary pixels of the hole
+     */
+    public BoundaryGrid(BoundarySamples b) {
+        samples = b;
+        int[] r = b.getRows();
+        int[] c = b.getCols();
+        int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+        int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+        for (int i = 0; i < r.length; i++) {
+            minRow = Math.min(minRow, r[i]);
+            maxRow = Math.max(maxRow, r[i]);
+            minCol = Math.min(minCol, c[i]);
+            maxCol = Math.max(maxCol, c[i]);
+        }
+        if (r.length == 0) {
+            minRow = maxRow = minCol = maxCol = 0;
+        }
+
+        // about 2 pixels per cell on average, the boundaries are lines, so most of the cells of a big area are empty
+        // and only the ones along the boundaries are full
+        long area = (long) (maxRow - minRow + 1) * (maxCol - minCol + 1);
+        cellSize = (int) Math.max(1, Math.ceil(Math.sqrt(2.0 * area / Math.max(1, r.length))));
+        top = minRow;
+        left = minCol;
+        rows = (maxRow - minRow) / cellSize + 1;
+        cols = (maxCol - minCol) / cellSize + 1;
+
+        cellStart = new int[rows * cols + 1];
+        for (int i = 0; i < r.length; i++) {
+            cellStart[cellOf(r[i], c[i]) + 1]++;
+        }
+        for (int i = 0; i < rows * cols; i++) {
+            cellStart[i + 1] += cellStart[i];
+        }
+        cellPixels = new int[r.length];
+        int[] next = Arrays.copyOf(cellStart, rows * cols);
+        for (int i = 0; i < r.length; i++) {
+            cellPixels[next[cellOf(r[i], c[i])]++] = i;
+        }
+    }
+
+    private int cellOf(int row, int col) {
+        return ((row - top) / cellSize) * cols + (col - left) / cellSize;
+    }
+
+    /**
+     * per thread buffers of getPixelFilling() and getWeights()
+     */
+    public static class Buffers {
+        private final int[] heapIdx;
+        private final double[] heapD2;
+        private int[] indices = new int[16];
+        private double[] weights = new double[16];
+
+        /**
+         * @param k the k of the k nearest mode, or 0 in radius mode
+         */
+        public Buffers(int k) {
+            heapIdx = new int[k];
+            heapD2 = new double[k];
+        }
+
+        private void add(int n, int index, double weight) {
+            if (n == indices.length) {
+                indices = Arrays.copyOf(indices, 2 * n);
+                weights = Arrays.copyOf(weights, 2 * n);
+            }
+            indices[n] = index;
+            weights[n] = weight;
+        }
+
+        /**
+         * @return the indices (in the boundary samples) of the pixels which were found by the last getWeights()
+         */
+        public int[] getIndices() {
+            return indices;
+        }
+
+        /**
+         * @return the weights of the pixels which were found by the last getWeights()
+         */
+        public double[] getWeights() {
+            return weights;
+        }
+    }
+
+    /**
+     * the value of a missing pixel according to the formula in section 2, with the default weights function,
+     * taking only the boundary pixels within the radius (if k is 0), or the k nearest ones (if k > 0).
+     * in radius mode, a missing pixel which has no boundary pixel within the radius is calculated from all of them
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param radius the radius, in radius mode
+     * @param k the number of nearest pixels to take, or 0 for radius mode
+     * @param buffers buffers of the calling thread, created with the same k
+     * @param out out[0] is set with the value to fill the missing pixel with, and out[1] with a bound on the
+     *            relative weight of the neglected pixels (their part of the total weight)
+     */
+    public void getPixelFilling(int row, int col, int z, double eps, double radius, int k, Buffers buffers,
+                                double[] out) {
+        int n = getWeights(row, col, z, eps, radius, k, buffers, out);
+        double[] values = samples.getValues();
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += buffers.weights[i] * values[buffers.indices[i]];
+        }
+        out[0] = sum;
+    }
+
+    /**
+     * finds the boundary pixels which getPixelFilling() weights for the given missing pixel, and their weights,
+     * normalized so their sum is 1. they are set in buffers.getIndices() and buffers.getWeights()
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param radius the radius, in radius mode
+     * @param k the number of nearest pixels to take, or 0 for radius mode
+     * @param buffers buffers of the calling thread, created with the same k
+     * @param out out[1] is set with a bound on the relative weight of the neglected pixels
+     * @return the number of pixels which were found
+     */
+    public int getWeights(int row, int col, int z, double eps, double radius, int k, Buffers buffers,
+                          double[] out) {
+        int[] r = samples.getRows();
+        int[] c = samples.getCols();
+
+        double weightsSum = 0;
+        int included;
+        double maxDistance;
+
+        if (k > 0) {
+            included = nearest(row, col, Math.min(k, r.length), buffers);
+            maxDistance = 0;
+            for (int i = 0; i < included; i++) {
+                double w = 1.0 / (Utils.distPow(buffers.heapD2[i], z) + eps);
+                buffers.add(i, buffers.heapIdx[i], w);
+                weightsSum += w;
+                maxDistance = Math.max(maxDistance, Math.sqrt(buffers.heapD2[i]));
+            }
+        } else {
+            included = 0;
+            double r2 = radius * radius;
+            int reach = (int) Math.ceil(radius / cellSize);
+            int cellRow = Math.floorDiv(row - top, cellSize);
+            int cellCol = Math.floorDiv(col - left, cellSize);
+            for (int i = Math.max(0, cellRow - reach); i <= Math.min(rows - 1, cellRow + reach); i++) {
+                for (int j = Math.max(0, cellCol - reach); j <= Math.min(cols - 1, cellCol + reach); j++) {
+                    int cell = i * cols + j;
+                    for (int s = cellStart[cell]; s < cellStart[cell + 1]; s++) {
+                        int p = cellPixels[s];
+                        int dr = r[p] - row;
+                        int dc = c[p] - col;
+                        int d2 = dr * dr + dc * dc;
+                        if (d2 <= r2) {
+                            double w = 1.0 / (Utils.distPow(d2, z) + eps);
+                            buffers.add(included++, p, w);
+                            weightsSum += w;
+                        }
+                    }
+                }
+            }
+            maxDistance = radius;
+            if (included == 0) {
+                // no pixel within the radius, all of them are taken
+                for (int p = 0; p < r.length; p++) {
+                    int dr = r[p] - row;
+                    int dc = c[p] - col;
+                    double w = 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+                    buffers.add(included++, p, w);
+                    weightsSum += w;
+                }
+            }
+        }
+
+        for (int i = 0; i < included; i++) {
+            buffers.weights[i] /= weightsSum;
+        }
+
+        // every neglected pixel is farther than maxDistance, so its weight is at most 1 / (maxDistance^z + eps)
+        double neglected = (r.length - included) / (Utils.distPow(maxDistance * maxDistance, z) + eps);
+        out[1] = neglected / (weightsSum + neglected);
+        return included;
+    }
+
+    /**
+     * finds the k nearest boundary pixels, by visiting rings of cells around the missing pixel, until the next ring
+     * can't contain a nearer pixel than the k-th nearest one found
+     * @return number of pixels found (k, unless there are fewer boundary pixels), they are in buffers
+     */
+    private int nearest(int row, int col, int k, Buffers buffers) {
+        int[] r = samples.getRows();
+        int[] c = samples.getCols();
+        int[] heapIdx = buffers.heapIdx;
+        double[] heapD2 = buffers.heapD2;
+        int size = 0;
+
+        int cellRow = Math.min(rows - 1, Math.max(0, Math.floorDiv(row - top, cellSize)));
+        int cellCol = Math.min(cols - 1, Math.max(0, Math.floorDiv(col - left, cellSize)));
+        int maxRing = Math.max(Math.max(cellRow, rows - 1 - cellRow), Math.max(cellCol, cols - 1 - cellCol));
+
+        // the missing pixel may be outside the grid, then no ring is nearer than its distance from the grid. this
+        // and the distance of the ring are bounds along different axes, so the larger of them is the bound
+        int outside = Math.max(Math.max(top - row, row - (top + rows * cellSize - 1)),
+                Math.max(left - col, col - (left + cols * cellSize - 1)));
+        outside = Math.max(0, outside);
+
+        for (int ring = 0; ring <= maxRing; ring++) {
+            double minDistance = Math.max(outside, (ring - 1) * cellSize);
+            if (size == k && minDistance * minDistance > heapD2[0]) {
+                break;
+            }
+            for (int i = cellRow - ring; i <= cellRow + ring; i++) {
+                if (i < 0 || i >= rows) {
+                    continue;
+                }
+                boolean edgeRow = i == cellRow - ring || i == cellRow + ring;
+                for (int j = cellCol - ring; j <= cellCol + ring; j += edgeRow ? 1 : 2 * Math.max(1, ring)) {
+                    if (j < 0 || j >= cols) {
+                        continue;
+                    }
+                    int cell = i * cols + j;
+                    for (int s = cellStart[cell]; s < cellStart[cell + 1]; s++) {
+                        int p = cellPixels[s];
+                        int dr = r[p] - row;
+                        int dc = c[p] - col;
+                        double d2 = dr * dr + dc * dc;
+                        if (size < k) {
+                            heapD2[size] = d2;
+                            heapIdx[size] = p;
+                            siftUp(heapD2, heapIdx, size++);
+                        } else if (d2 < heapD2[0]) {
+                            heapD2[0] = d2;
+                            heapIdx[0] = p;
+                            siftDown(heapD2, heapIdx, size);
+                        }
+                    }
+                }
+            }
+        }
+        return size;
+    }
+
+    // max heap by the squared distance
+
+    private static void siftUp(double[] d2, int[] idx, int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (d2[parent] >= d2[i]) {
+                return;
+            }
+            swap(d2, idx, i, parent);
+            i = parent;
+        }
+    }
+
+    private static void siftDown(double[] d2, int[] idx, int size) {
+        int i = 0;
+        while (true) {
+            int largest = i;
+            int l = 2 * i + 1;
+            if (l < size && d2[l] > d2[largest]) {
+                largest = l;
+            }
+            if (l + 1 < size && d2[l + 1] > d2[largest]) {
+                largest = l + 1;
+            }
+            if (largest == i) {
+                return;
+            }
+            swap(d2, idx, i, largest);
+            i = largest;
+        }
+    }
+
+    private static void swap(double[] d2, int[] idx, int i, int j) {
+        double d = d2[i];
+        d2[i] = d2[j];
+        d2[j] = d;
+        int t = idx[i];
+        idx[i] = idx[j];
+        idx[j] = t;
+    }
+}
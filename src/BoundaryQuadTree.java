@@ -0,0 +1,236 @@
+import java.util.Arrays;
+
+/**
+ * a quadtree over the boundary pixels of a hole, used to approximate the section 2 algorithm in O(n log m)
+ * (Barnes-Hut style).
+ *
+ * every node keeps the number of boundary pixels under it, the sum of their values and their centroid.
+ * when a node is far enough from the missing pixel, compared to its size (size / distance < theta, where the
+ * distance is measured to the nearest point of the node's bounding box),
+ * all its boundary pixels are treated as a single pixel in the centroid, with the node's count and sum of values.
+ * otherwise its children are visited, and the pixels of leaves are weighted exactly.
+ * theta = 0 gives the exact result, bigger values are faster and less accurate
+ */
+public class BoundaryQuadTree {
+    private static final int LEAF_SIZE = 8;
+
+    private final BoundarySamples samples;
+
+    // indices of the samples, ordered so that the samples of every node are in a continuous range
+    private final int[] order;
+
+    // nodes are kept in arrays, node i covers order[from[i]], ..., order[to[i] - 1]
+    private int[] from;
+    private int[] to;
+    private int[] firstChild; // children of node i are firstChild[i], ..., firstChild[i] + childCount[i] - 1
+    private int[] childCount;
+    private double[] size;
+    private int[] minRows;
+    private int[] maxRows;
+    private int[] minCols;
+    private int[] maxCols;
+    private double[] centroidRow;
+    private double[] centroidCol;
+    private double[] valuesSum;
+    private int nodes = 0;
+
+    public BoundaryQuadTree(BoundarySamples b) {
+        samples = b;
+        order = new int[b.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        int capacity = Math.max(16, 2 * order.length / LEAF_SIZE + 16);
+        from = new int[capacity];
+        to = new int[capacity];
+        firstChild = new int[capacity];
+        childCount = new int[capacity];
+        size = new double[capacity];
+        minRows = new int[capacity];
+        maxRows = new int[capacity];
+        minCols = new int[capacity];
+        maxCols = new int[capacity];
+        centroidRow = new double[capacity];
+        centroidCol = new double[capacity];
+        valuesSum = new double[capacity];
+
+        if (order.length > 0) {
+            build(newNode(0, order.length));
+        }
+    }
+
+    /**
+     * the value of a missing pixel according to the formula in section 2, with the default weights function,
+     * approximated by the tree
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param theta accuracy argument, the maximal ratio between a node's size and its distance from the
+     *              missing pixel, for which the node is approximated as a single pixel
+     * @return the value to fill the missing pixel with
+     */
+    public double getPixelFilling(int row, int col, int z, double eps, double theta) {
+        int[] rows = samples.getRows();
+        int[] cols = samples.getCols();
+        double[] values = samples.getValues();
+
+        double sum = 0;
+        double weightsSum = 0;
+        int[] stack = new int[64];
+        int top = 0;
+        stack[top++] = 0;
+        while (top > 0) {
+            int node = stack[--top];
+            if (childCount[node] > 0 && size[node] * size[node] < theta * theta * boxDist2(node, row, col)) {
+                double dr = centroidRow[node] - row;
+                double dc = centroidCol[node] - col;
+                double d2 = dr * dr + dc * dc;
+                double w = 1.0 / (Utils.distPow(d2, z) + eps);
+                sum += w * valuesSum[node];
+                weightsSum += w * (to[node] - from[node]);
+            } else if (childCount[node] > 0) {
+                if (top + childCount[node] > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                for (int c = 0; c < childCount[node]; c++) {
+                    stack[top++] = firstChild[node] + c;
+                }
+            } else {
+                for (int i = from[node]; i < to[node]; i++) {
+                    int s = order[i];
+                    int sdr = rows[s] - row;
+                    int sdc = cols[s] - col;
+                    double w = 1.0 / (Utils.distPow(sdr * sdr + sdc * sdc, z) + eps);
+                    sum += w * values[s];
+                    weightsSum += w;
+                }
+            }
+        }
+        return sum / weightsSum;
+    }
+
+    /**
+     * @return the squared distance between the given pixel and the nearest point of the node's bounding box
+     */
+    private double boxDist2(int node, int row, int col) {
+        int dr = Math.max(0, Math.max(minRows[node] - row, row - maxRows[node]));
+        int dc = Math.max(0, Math.max(minCols[node] - col, col - maxCols[node]));
+        return (double) dr * dr + (double) dc * dc;
+    }
+
+    /**
+     * @return number of nodes in the tree
+     */
+    public int getNodesCount() {
+        return nodes;
+    }
+
+    /**
+     * creates a node for the samples order[f], ..., order[t - 1], and sets its aggregated values
+     */
+    private int newNode(int f, int t) {
+        if (nodes == from.length) {
+            int capacity = nodes * 2;
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            childCount = Arrays.copyOf(childCount, capacity);
+            size = Arrays.copyOf(size, capacity);
+            minRows = Arrays.copyOf(minRows, capacity);
+            maxRows = Arrays.copyOf(maxRows, capacity);
+            minCols = Arrays.copyOf(minCols, capacity);
+            maxCols = Arrays.copyOf(maxCols, capacity);
+            centroidRow = Arrays.copyOf(centroidRow, capacity);
+            centroidCol = Arrays.copyOf(centroidCol, capacity);
+            valuesSum = Arrays.copyOf(valuesSum, capacity);
+        }
+
+        int[] rows = samples.getRows();
+        int[] cols = samples.getCols();
+        double[] values = samples.getValues();
+        int minRow = Integer.MAX_VALUE, maxRow = Integer.MIN_VALUE;
+        int minCol = Integer.MAX_VALUE, maxCol = Integer.MIN_VALUE;
+        double rowsSum = 0, colsSum = 0, vSum = 0;
+        for (int i = f; i < t; i++) {
+            int s = order[i];
+            minRow = Math.min(minRow, rows[s]);
+            maxRow = Math.max(maxRow, rows[s]);
+            minCol = Math.min(minCol, cols[s]);
+            maxCol = Math.max(maxCol, cols[s]);
+            rowsSum += rows[s];
+            colsSum += cols[s];
+            vSum += values[s];
+        }
+
+        int node = nodes++;
+        from[node] = f;
+        to[node] = t;
+        childCount[node] = 0;
+        size[node] = Math.max(maxRow - minRow, maxCol - minCol);
+        minRows[node] = minRow;
+        maxRows[node] = maxRow;
+        minCols[node] = minCol;
+        maxCols[node] = maxCol;
+        centroidRow[node] = rowsSum / (t - f);
+        centroidCol[node] = colsSum / (t - f);
+        valuesSum[node] = vSum;
+        return node;
+    }
+
+    /**
+     * splits the node to (up to) four quadrants around its center, recursively, until it's small enough
+     */
+    private void build(int node) {
+        int f = from[node];
+        int t = to[node];
+        if (t - f <= LEAF_SIZE || size[node] == 0) {
+            return;
+        }
+
+        int[] rows = samples.getRows();
+        int[] cols = samples.getCols();
+        int minRow = Integer.MAX_VALUE, minCol = Integer.MAX_VALUE;
+        for (int i = f; i < t; i++) {
+            minRow = Math.min(minRow, rows[order[i]]);
+            minCol = Math.min(minCol, cols[order[i]]);
+        }
+        double midRow = minRow + size[node] / 2.0;
+        double midCol = minCol + size[node] / 2.0;
+
+        // partition the range to the 4 quadrants: top-left, top-right, bottom-left, bottom-right
+        int topEnd = partition(f, t, rows, midRow);
+        int[] bounds = new int[] {f, partition(f, topEnd, cols, midCol), topEnd, partition(topEnd, t, cols, midCol), t};
+
+        // children of a node must be created consecutively
+        int[] children = new int[4];
+        int count = 0;
+        for (int q = 0; q < 4; q++) {
+            if (bounds[q + 1] > bounds[q]) {
+                children[count++] = newNode(bounds[q], bounds[q + 1]);
+            }
+        }
+        firstChild[node] = children[0];
+        childCount[node] = count;
+        for (int c = 0; c < count; c++) {
+            build(children[c]);
+        }
+    }
+
+    /**
+     * reorders order[f], ..., order[t - 1] so the samples with coordinate below mid come first
+     * @return index of the first sample with coordinate which isn't below mid
+     */
+    private int partition(int f, int t, int[] coords, double mid) {
+        int i = f;
+        for (int j = f; j < t; j++) {
+            if (coords[order[j]] < mid) {
+                int tmp = order[i];
+                order[i] = order[j];
+                order[j] = tmp;
+                i++;
+            }
+        }
+        return i;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * the boundary pixels of a hole, gathered from a raster into primitive arrays (structure of arrays),
+ * so the weighting loop of the section 2 algorithm can run over them without touching the raster or any object
+ */
+public class BoundarySamples {
+    private final int[] rows;
+    private final int[] cols;
+
+    // the values of the pixels, with the channels of every pixel interleaved (see ColorRaster)
+    private final double[] values;
+    private final int channels;
+
+    // rows and cols as doubles, created only when they are needed by VectorFill
+    private double[] rowsAsDoubles;
+    private double[] colsAsDoubles;
+
+    // single precision copies, created only when they are needed by the float path, see Defs.PRECISION
+    private float[] rowsAsFloats;
+    private float[] colsAsFloats;
+    private float[] valuesAsFloats;
+
+    public BoundarySamples(int[] r, int[] c, double[] v) {
+        this(r, c, v, 1);
+    }
+
+    public BoundarySamples(int[] r, int[] c, double[] v, int ch) {
+        rows = r;
+        cols = c;
+        values = v;
+        channels = ch;
+    }
+
+    /**
+     * gathers the locations and values of the given boundary pixels from the raster
+     * @param m raster to read the values from
+     * @param boundaries locations of the boundary pixels
+     * @return BoundarySamples
+     */
+    public static BoundarySamples gather(Raster m, Index[] boundaries) {
+        return gather(m, Index.pack(boundaries));
+    }
+
+    /**
+     * gathers the locations and values of the given boundary pixels from the raster
+     * @param m raster to read the values from
+     * @param boundaries packed locations of the boundary pixels, see Index.pack()
+     * @return BoundarySamples
+     */
+    public static BoundarySamples gather(Raster m, long[] boundaries) {
+        int[] r = new int[boundaries.length];
+        int[] c = new int[boundaries.length];
+        double[] v = new double[boundaries.length];
+        for (int i = 0; i < boundaries.length; i++) {
+            r[i] = Index.rowOf(boundaries[i]);
+            c[i] = Index.colOf(boundaries[i]);
+            v[i] = m.get(r[i], c[i]);
+        }
+        return new BoundarySamples(r, c, v);
+    }
+
+    /**
+     * gathers the locations and values of the given boundary pixels from the single precision raster
+     * @param m raster to read the values from
+     * @param boundaries packed locations of the boundary pixels, see Index.pack()
+     * @return BoundarySamples
+     */
+    public static BoundarySamples gather(FloatRaster m, long[] boundaries) {
+        int[] r = new int[boundaries.length];
+        int[] c = new int[boundaries.length];
+        double[] v = new double[boundaries.length];
+        for (int i = 0; i < boundaries.length; i++) {
+            r[i] = Index.rowOf(boundaries[i]);
+            c[i] = Index.colOf(boundaries[i]);
+            v[i] = m.get(r[i], c[i]);
+        }
+        return new BoundarySamples(r, c, v);
+    }
+
+    /**
+     * gathers the locations and the values of all the channels of the given boundary pixels from the raster
+     * @param m raster to read the values from
+     * @param boundaries packed locations of the boundary pixels, see Index.pack()
+     * @return BoundarySamples
+     */
+    public static BoundarySamples gather(ColorRaster m, long[] boundaries) {
+        int ch = m.getChannels();
+        int[] r = new int[boundaries.length];
+        int[] c = new int[boundaries.length];
+        double[] v = new double[boundaries.length * ch];
+        for (int i = 0; i < boundaries.length; i++) {
+            r[i] = Index.rowOf(boundaries[i]);
+            c[i] = Index.colOf(boundaries[i]);
+            for (int k = 0; k < ch; k++) {
+                v[i * ch + k] = m.get(r[i], c[i], k);
+            }
+        }
+        return new BoundarySamples(r, c, v, ch);
+    }
+
+    public int size() {
+        return rows.length;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+
+    public int[] getRows() {
+        return rows;
+    }
+
+    public int[] getCols() {
+        return cols;
+    }
+
+    public double[] getValues() {
+        return values;
+    }
+
+    public synchronized double[] getRowsAsDoubles() {
+        if (rowsAsDoubles == null) {
+            rowsAsDoubles = toDoubles(rows);
+        }
+        return rowsAsDoubles;
+    }
+
+    public synchronized double[] getColsAsDoubles() {
+        if (colsAsDoubles == null) {
+            colsAsDoubles = toDoubles(cols);
+        }
+        return colsAsDoubles;
+    }
+
+    public synchronized float[] getRowsAsFloats() {
+        if (rowsAsFloats == null) {
+            rowsAsFloats = toFloats(rows);
+        }
+        return rowsAsFloats;
+    }
+
+    public synchronized float[] getColsAsFloats() {
+        if (colsAsFloats == null) {
+            colsAsFloats = toFloats(cols);
+        }
+        return colsAsFloats;
+    }
+
+    public synchronized float[] getValuesAsFloats() {
+        if (valuesAsFloats == null) {
+            valuesAsFloats = new float[values.length];
+            for (int i = 0; i < values.length; i++) {
+                valuesAsFloats[i] = (float) values[i];
+            }
+        }
+        return valuesAsFloats;
+    }
+
+    private static float[] toFloats(int[] a) {
+        float[] f = new float[a.length];
+        for (int i = 0; i < a.length; i++) {
+            f[i] = a[i];
+        }
+        return f;
+    }
+
+    private static double[] toDoubles(int[] a) {
+        double[] d = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            d[i] = a[i];
+        }
+        return d;
+    }
+}
@@ -0,0 +1,131 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+
+/**
+ * a java-heap, row-major representation of a multi channel image, with the channels of every pixel interleaved
+ * (the same layout as a TYPE_3BYTE_BGR image: blue, green, red).
+ *
+ * a missing pixel holds Defs.HOLE_VALUE in all of its channels, see MockUtils.setMockHole(ColorRaster, Index[])
+ */
+public class ColorRaster {
+    private final double[] data;
+    private final int width;
+    private final int height;
+    private final int channels;
+
+    public ColorRaster(int h, int w, int ch) {
+        height = h;
+        width = w;
+        channels = ch;
+        data = new double[h * w * ch];
+    }
+
+    /**
+     * creates a 3 channels raster (blue, green, red) of the given image, in a single pass over its pixels
+     * @param img the image
+     * @return ColorRaster
+     */
+    public static ColorRaster fromImg(BufferedImage img) {
+        ColorRaster r = new ColorRaster(img.getHeight(), img.getWidth(), 3);
+        if (img.getType() == BufferedImage.TYPE_3BYTE_BGR && img.getSampleModel() instanceof ComponentSampleModel) {
+            ComponentSampleModel sm = (ComponentSampleModel) img.getSampleModel();
+            byte[] bytes = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+            int first = ((DataBufferByte) img.getRaster().getDataBuffer()).getOffset()
+                    - img.getRaster().getSampleModelTranslateY() * sm.getScanlineStride()
+                    - img.getRaster().getSampleModelTranslateX() * sm.getPixelStride();
+            for (int i = 0; i < r.height; i++) {
+                int p = first + i * sm.getScanlineStride();
+                int k = i * r.width * 3;
+                for (int j = 0; j < r.width * 3; j++) {
+                    r.data[k + j] = bytes[p + j] & 0xff;
+                }
+            }
+        } else {
+            for (int i = 0; i < r.height; i++) {
+                for (int j = 0; j < r.width; j++) {
+                    int rgb = img.getRGB(j, i);
+                    int k = (i * r.width + j) * 3;
+                    r.data[k] = rgb & 0xff;
+                    r.data[k + 1] = (rgb >> 8) & 0xff;
+                    r.data[k + 2] = (rgb >> 16) & 0xff;
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * creates a TYPE_3BYTE_BGR image of a 3 channels raster, values are rounded and saturated as in Utils.toBytes()
+     * @return BufferedImage
+     */
+    public BufferedImage toImg() {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] bytes = ((DataBufferByte) img.getRaster().getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++) {
+            double v = Math.rint(data[i]);
+            bytes[i] = (byte) (v < 0 ? 0 : (v > 255 ? 255 : (int) v));
+        }
+        return img;
+    }
+
+    /**
+     * @param ch the channel
+     * @return a single channel raster holding a copy of the given channel
+     */
+    public Raster getChannel(int ch) {
+        Raster r = new Raster(height, width);
+        double[] d = r.getData();
+        for (int i = 0; i < d.length; i++) {
+            d[i] = data[i * channels + ch];
+        }
+        return r;
+    }
+
+    /**
+     * copies the given pixels of a single channel raster to the given channel of this raster
+     * @param ch the channel
+     * @param r the raster to copy from
+     * @param pixels packed locations of the pixels to copy, see Index.pack()
+     */
+    public void setChannel(int ch, Raster r, long[] pixels) {
+        for (long p: pixels) {
+            set(Index.rowOf(p), Index.colOf(p), ch, r.get(Index.rowOf(p), Index.colOf(p)));
+        }
+    }
+
+    public double get(int row, int col, int ch) {
+        return data[(row * width + col) * channels + ch];
+    }
+
+    public void set(int row, int col, int ch, double v) {
+        data[(row * width + col) * channels + ch] = v;
+    }
+
+    /**
+     * @return true if the pixel is missing (see class description)
+     */
+    public boolean isMissing(int row, int col) {
+        return data[(row * width + col) * channels] == Defs.HOLE_VALUE;
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+    public double[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getChannels() {
+        return channels;
+    }
+}
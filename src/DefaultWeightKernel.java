@@ -0,0 +1,42 @@
+/**
+ * the default weights function of section 2: 1 / (d^z + eps), where d is the euclidean distance.
+ * Utils.fillHole(Raster r, Hole hole, WeightKernel kernel, int parallelism) fills with this kernel through the
+ * fused loop of Utils.fillHole(Raster r, Hole hole, int z, double eps, int parallelism, boolean simd)
+ */
+public class DefaultWeightKernel implements WeightKernel {
+    private final int z;
+    private final double eps;
+
+    /**
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     */
+    public DefaultWeightKernel(int z, double eps) {
+        this.z = z;
+        this.eps = eps;
+    }
+
+    @Override
+    public double weight(int row, int col, int boundaryRow, int boundaryCol) {
+        int dr = boundaryRow - row;
+        int dc = boundaryCol - col;
+        return 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+    }
+
+    @Override
+    public void weights(int row, int col, int[] boundaryRows, int[] boundaryCols, int n, double[] out) {
+        for (int i = 0; i < n; i++) {
+            int dr = boundaryRows[i] - row;
+            int dc = boundaryCols[i] - col;
+            out[i] = 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+        }
+    }
+
+    public int getZ() {
+        return z;
+    }
+
+    public double getEps() {
+        return eps;
+    }
+}
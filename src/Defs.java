@@ -13,12 +13,103 @@ public class Defs {
     public final static double HOLE_VALUE = -1.0;
 
     // if true some logs will be printed to standard output, which will enable us to track our algorithm's performance
+    // (including the metrics, see Defs.METRICS)
     public static boolean TEST_MODE = false;
 
+    // records the time of every phase, and counters, see Metrics. it's a RecordingMetrics in test mode, or in case
+    // METRICS_PATH is given, and NoopMetrics otherwise
+    public static Metrics METRICS = NoopMetrics.INSTANCE;
+
+    // if set, the metrics are written to this file: CSV if its name ends with .csv, otherwise JSON
+    public static String METRICS_PATH = null;
+
     // if 0 full un-approximating algorithm (in section 2 in task's description) will run
     // if 1 approximating algorithm (section 5) will run
+    // if 2 the algorithm in section 2 will be approximated with a quadtree, see BoundaryQuadTree
+    // if 3 the algorithm in section 2 will run for all missing pixels at once with FFT convolutions, see FftFill
+    // if 4 a deterministic and parallel version of the algorithm in section 5 will run, see WavefrontFill
+    // if 5 the algorithm in section 2 will weight only the boundary pixels near every missing pixel, see BoundaryGrid
+    // if 6 the hole will be filled with the solution of the Laplace equation (harmonic inpainting), see LaplaceFill
+    // if 7 the algorithm in section 2 will be approximated coarse to fine, over a pyramid of the hole, see PyramidFill
     public static int ALG = 0;
 
+    // accuracy argument of algorithm 2, see BoundaryQuadTree
+    public static double THETA = 0.25;
+
+    // arguments of algorithm 5: the boundary pixels within CUTOFF_RADIUS of a missing pixel are weighted,
+    // or its K_NEAREST nearest boundary pixels if K_NEAREST > 0, see BoundaryGrid
+    public static double CUTOFF_RADIUS = 16;
+    public static int K_NEAREST = 0;
+
+    // arguments of algorithm 6: the multigrid stops when no missing pixel differs from the average of its neighbors
+    // by more than LAPLACE_TOLERANCE gray levels, or after LAPLACE_MAX_CYCLES V-cycles, see LaplaceFill
+    public static double LAPLACE_TOLERANCE = 1e-3;
+    public static int LAPLACE_MAX_CYCLES = 100;
+
+    // argument of algorithm 7: on every level of the pyramid, the missing pixels in this distance from the boundaries
+    // are calculated with the formula of section 2, and the rest are interpolated from the coarser level
+    public static int PYRAMID_BAND = 4;
+
+    // number of threads which fill the hole, 1 means the sequential algorithm will run
+    public static int PARALLELISM = 1;
+
+    // the smallest number of missing pixels which is given to a single thread, see FillHoleTask
+    public final static int PARALLEL_CHUNK_SIZE = 256;
+
+    // if true, the weighting loop of algorithm 0 will use SIMD instructions (see VectorFill),
+    // in case the module jdk.incubator.vector isn't available at runtime, the scalar code will run
+    public static boolean SIMD = false;
+
+    // the precision of the working raster of algorithms 0 and 1, see Utils.fillHoles(..., int precision):
+    // PRECISION_DOUBLE, PRECISION_FLOAT (see FloatRaster), or PRECISION_FIXED - fixed point averaging for
+    // algorithm 1 (see FixedRaster), algorithm 0 runs in float precision in this mode
+    public final static int PRECISION_DOUBLE = 0;
+    public final static int PRECISION_FLOAT = 1;
+    public final static int PRECISION_FIXED = 2;
+    public static int PRECISION = PRECISION_DOUBLE;
+
+    // if true, the batch mode (see BatchRunner) fills the images with fill plans of their masks, so images which share
+    // a mask (e.g frames of a video) are filled without calculating any weight again, see FillPlan.
+    // if FILL_PLAN_DIR is set, the plans are saved to, and loaded from, this directory
+    public static boolean FILL_PLANS = false;
+    public static String FILL_PLAN_DIR = null;
+
+    // if set, the program stays resident and serves fill jobs on a Unix domain socket in this path, with
+    // SERVER_WORKERS threads running the fills, see FillServer and FillClient.
+    // the images and the results which are sent are limited to SERVER_MAX_MESSAGE_BYTES
+    public static String SERVER = null;
+    public static int SERVER_WORKERS = Runtime.getRuntime().availableProcessors();
+    public final static int SERVER_MAX_MESSAGE_BYTES = 1 << 28;
+
+    // the maximal number of plans which are kept in memory, and the maximal number of weights of a plan, above which
+    // every missing pixel keeps only its nearest boundary pixels, see FillPlan
+    public final static int FILL_PLAN_CACHE_SIZE = 8;
+    public final static long FILL_PLAN_MAX_ENTRIES = 1 << 24;
+
+    // the maximal total number of weights which are kept in lookup tables, see WeightTable
+    public final static long WEIGHT_TABLE_MAX_ENTRIES = 1 << 22;
+
+    // if true the image will be held in a memory mapped raw file, and only tiles around the holes will be
+    // loaded to the memory, see TiledHoleFiller
+    public static boolean TILED = false;
+
+    // number of rows which are decoded, or scanned for holes, at a time in tiled mode
+    public static int TILE_STRIPE_ROWS = 256;
+
+    // if true the hole is filled in all the channels of the color image, instead of in its grayscale version,
+    // see ColorRaster
+    public static boolean COLOR = false;
+
+    // if set, all the images in this directory (or manifest file) are filled in a pipeline, see BatchRunner
+    public static String BATCH = null;
+
+    // number of images which may wait between every two stages of the batch pipeline
+    public static int BATCH_QUEUE_DEPTH = 4;
+
+    // number of threads of each of the decode, detect and encode stages of the batch pipeline,
+    // the fill stage has Defs.PARALLELISM threads
+    public static int BATCH_IO_THREADS = 2;
+
     public static int MOCK_HOLE_START_ROW = 120;
     public static int MOCK_HOLE_START_COL = 200;
     public static int MOCK_HOLE_HEIGHT = 10;
@@ -32,6 +123,7 @@ public class Defs {
     public final static String INPUT_GRAYSCALE_IMG_NAME = "inputGrayscaleImg";
     public final static String BOUNDARY_VIS_IMG_NAME = "boundaryVisualized";
     public final static String FINAL_FILLED_IMG_NAME = "finalFilledImg";
+    public final static String TILED_RAW_FILE_NAME = "grayscaleImg.raw";
 
     // this uses to recognise whether a certain cmd line argument was given or not,
     // used in HoleFillingRunner.parseArgs()
@@ -0,0 +1,103 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * an in-place, iterative radix-2 fast fourier transform of complex data, given as separate real and imaginary arrays.
+ *
+ * a "plan" of a given size - the bit reversal permutation and the twiddle factors - is calculated once,
+ * and shared, see FFT.get()
+ */
+public class FFT {
+    private final int n;
+    private final int[] reversed;
+    private final double[] cos;
+    private final double[] sin;
+
+    // plans by their size
+    private static final Map<Integer, FFT> plans = new HashMap<>();
+
+    private FFT(int n) {
+        this.n = n;
+        int bits = Integer.numberOfTrailingZeros(n);
+        reversed = new int[n];
+        for (int i = 0; i < n; i++) {
+            reversed[i] = (bits == 0) ? 0 : Integer.reverse(i) >>> (32 - bits);
+        }
+        cos = new double[n / 2];
+        sin = new double[n / 2];
+        for (int i = 0; i < n / 2; i++) {
+            cos[i] = Math.cos(2 * Math.PI * i / n);
+            sin[i] = Math.sin(2 * Math.PI * i / n);
+        }
+    }
+
+    /**
+     * @param n size of the transform, must be a power of 2
+     * @return the shared plan for transforms of size n
+     */
+    public static synchronized FFT get(int n) {
+        if (Integer.bitCount(n) != 1) {
+            throw new IllegalArgumentException("FFT size must be a power of 2, got " + n);
+        }
+        return plans.computeIfAbsent(n, FFT::new);
+    }
+
+    /**
+     * @param n minimal size
+     * @return the smallest power of 2 which isn't smaller than n
+     */
+    public static int paddedSize(int n) {
+        return n <= 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    /**
+     * transforms re[off], ..., re[off + n - 1] (and the same in im) in place
+     * @param re real parts
+     * @param im imaginary parts
+     * @param off offset of the first element in the arrays
+     * @param inverse if true the inverse transform is calculated (including the 1/n scaling)
+     */
+    public void transform(double[] re, double[] im, int off, boolean inverse) {
+        for (int i = 0; i < n; i++) {
+            int j = reversed[i];
+            if (i < j) {
+                double t = re[off + i];
+                re[off + i] = re[off + j];
+                re[off + j] = t;
+                t = im[off + i];
+                im[off + i] = im[off + j];
+                im[off + j] = t;
+            }
+        }
+
+        for (int len = 2; len <= n; len <<= 1) {
+            int half = len >> 1;
+            int step = n / len;
+            for (int i = 0; i < n; i += len) {
+                for (int j = 0; j < half; j++) {
+                    double wr = cos[j * step];
+                    double wi = inverse ? sin[j * step] : -sin[j * step];
+                    int a = off + i + j;
+                    int b = a + half;
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+
+        if (inverse) {
+            for (int i = off; i < off + n; i++) {
+                re[i] /= n;
+                im[i] /= n;
+            }
+        }
+    }
+
+    public int size() {
+        return n;
+    }
+}
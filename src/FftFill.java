@@ -0,0 +1,159 @@
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * fills a hole according to the algorithm in section 2, for all the missing pixels at once, using FFT.
+ *
+ * the formula of section 2 is a ratio of two convolutions with the weights kernel K(d) = 1 / (d^z + eps):
+ * (boundary values * K) / (boundary indicator * K). both are calculated over the hole's bounding box (which contains
+ * its boundary), as a single complex convolution of (values + i * indicator) with the real kernel K, zero padded
+ * to powers of 2, so this runs in O(A log A) where A is the area of the bounding box, regardless of the number of
+ * boundary pixels.
+ *
+ * K(0) is set to 0, since a missing pixel is never a boundary pixel, this keeps the huge 1/eps value from
+ * dominating the rounding errors of the transform. with it, the results match Utils.fillHole() up to ~1e-5
+ * gray levels for holes of a few hundreds pixels across (the error grows with z)
+ */
+public class FftFill {
+    // the total size of the cached kernels, the least recently used ones are evicted above it
+    private static final long KERNEL_CACHE_BYTES = 1L << 26;
+    // scratch buffers up to this number of elements are kept by their thread, larger ones are dropped after use
+    private static final int SCRATCH_MAX_ELEMENTS = 1 << 20;
+
+    // transformed kernels by z, eps and the padded size, in access order
+    private static final LinkedHashMap<String, double[]> kernels = new LinkedHashMap<>(16, 0.75f, true);
+    private static long kernelsBytes = 0;
+
+    // scratch buffers, reused by the same thread across holes
+    private static final ThreadLocal<double[][]> scratch = ThreadLocal.withInitial(() -> new double[2][0]);
+    private static final ThreadLocal<double[][]> columnScratch = ThreadLocal.withInitial(() -> new double[2][0]);
+
+    /**
+     * fills the hole in the given raster, see class description
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to run the transforms of the rows and the columns with
+     */
+    public static void fillHole(Raster r, Hole hole, int z, double eps, int parallelism) {
+        if (hole.getPackedMissingPixels().length == 0) {
+            return;
+        }
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        int h = hole.getMaxRow() - top + 1;
+        int w = hole.getMaxCol() - left + 1;
+
+        // the padding must hold offsets in both directions, so the cyclic convolution won't wrap around
+        int rows = FFT.paddedSize(2 * h - 1);
+        int cols = FFT.paddedSize(2 * w - 1);
+
+        double[][] buffers = getScratch(scratch, rows * cols);
+        double[] re = buffers[0];
+        double[] im = buffers[1];
+        Arrays.fill(re, 0, rows * cols, 0.0);
+        Arrays.fill(im, 0, rows * cols, 0.0);
+        for (long p: hole.getPackedBoundariesPixels()) {
+            int i = (Index.rowOf(p) - top) * cols + (Index.colOf(p) - left);
+            re[i] = r.get(Index.rowOf(p), Index.colOf(p));
+            im[i] = 1.0;
+        }
+
+        double[] k = getTransformedKernel(z, eps, rows, cols, parallelism);
+        transform2D(re, im, rows, cols, false, parallelism);
+        for (int i = 0; i < rows * cols; i++) {
+            re[i] *= k[i];
+            im[i] *= k[i];
+        }
+        transform2D(re, im, rows, cols, true, parallelism);
+
+        for (long p: hole.getPackedMissingPixels()) {
+            int i = (Index.rowOf(p) - top) * cols + (Index.colOf(p) - left);
+            r.set(Index.rowOf(p), Index.colOf(p), re[i] / im[i]);
+        }
+    }
+
+    /**
+     * returns the transform of the weights kernel, wrapped around a rows x cols grid. since the kernel is real and
+     * symmetric, its transform is real, so only the real part is returned
+     */
+    private static double[] getTransformedKernel(int z, double eps, int rows, int cols, int parallelism) {
+        String key = z + "," + Double.doubleToLongBits(eps) + "," + rows + "," + cols;
+        synchronized (kernels) {
+            double[] k = kernels.get(key);
+            if (k != null) {
+                return k;
+            }
+        }
+
+        double[] re = new double[rows * cols];
+        double[] im = new double[rows * cols];
+        for (int i = 0; i < rows; i++) {
+            int dr = (i <= rows / 2) ? i : i - rows;
+            for (int j = 0; j < cols; j++) {
+                int dc = (j <= cols / 2) ? j : j - cols;
+                if (dr != 0 || dc != 0) {
+                    re[i * cols + j] = 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+                }
+            }
+        }
+        transform2D(re, im, rows, cols, false, parallelism);
+
+        long bytes = 8L * re.length;
+        if (bytes <= KERNEL_CACHE_BYTES) {
+            synchronized (kernels) {
+                if (kernels.put(key, re) == null) {
+                    kernelsBytes += bytes;
+                }
+                Iterator<double[]> eldest = kernels.values().iterator();
+                while (kernelsBytes > KERNEL_CACHE_BYTES) {
+                    kernelsBytes -= 8L * eldest.next().length;
+                    eldest.remove();
+                }
+            }
+        }
+        return re;
+    }
+
+    /**
+     * @return 2 buffers of at least n elements. if n is small they are the thread's buffers (grown as needed),
+     * otherwise new ones, which aren't kept after the transform
+     */
+    private static double[][] getScratch(ThreadLocal<double[][]> local, int n) {
+        if (n > SCRATCH_MAX_ELEMENTS) {
+            return new double[2][n];
+        }
+        double[][] buffers = local.get();
+        if (buffers[0].length < n) {
+            buffers[0] = new double[n];
+            buffers[1] = new double[n];
+        }
+        return buffers;
+    }
+
+    /**
+     * 2 dimensional transform of a rows x cols row-major grid, in place: all rows and then all columns
+     */
+    private static void transform2D(double[] re, double[] im, int rows, int cols, boolean inverse, int parallelism) {
+        FFT rowsFft = FFT.get(cols);
+        Utils.parallelFor(rows, parallelism, i -> rowsFft.transform(re, im, i * cols, inverse));
+
+        FFT colsFft = FFT.get(rows);
+        Utils.parallelFor(cols, parallelism, j -> {
+            double[][] buffers = getScratch(columnScratch, rows);
+            double[] colRe = buffers[0];
+            double[] colIm = buffers[1];
+            for (int i = 0; i < rows; i++) {
+                colRe[i] = re[i * cols + j];
+                colIm[i] = im[i * cols + j];
+            }
+            colsFft.transform(colRe, colIm, 0, inverse);
+            for (int i = 0; i < rows; i++) {
+                re[i * cols + j] = colRe[i];
+                im[i * cols + j] = colIm[i];
+            }
+        });
+    }
+}
@@ -0,0 +1,123 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a command line client of FillServer, sends a single fill job and logs the timings of the server.
+ * the arguments are positional, as the ones of HoleFillingRunner, and Defs.CMD_LINE_ARG_DEF leaves one unset:
+ *     socket path, image path, alg, z, eps, mask path, output path, send the image's bytes (true / false)
+ * without an output path the filled image is written next to the image, as <name>_filled.png. unless the bytes are
+ * sent, the server reads the image and the mask by their (absolute) paths
+ */
+public class FillClient {
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("usage: FillClient <socket> <image> [alg] [z] [eps] [mask] [output] [send bytes]");
+            return;
+        }
+        Path socket = Paths.get(args[0]);
+        Path image = Paths.get(args[1]).toAbsolutePath();
+        Map<String, String> request = new LinkedHashMap<>();
+        putArg(request, "alg", args, 2);
+        putArg(request, "z", args, 3);
+        putArg(request, "eps", args, 4);
+        if (isArgGiven(args, 5)) {
+            request.put("mask", Paths.get(args[5]).toAbsolutePath().toString());
+        }
+        Path output = isArgGiven(args, 6) ? Paths.get(args[6]).toAbsolutePath() : null;
+        boolean sendBytes = isArgGiven(args, 7) && Boolean.parseBoolean(args[7]);
+
+        try {
+            long start = System.nanoTime();
+            Map<String, String> response = fill(socket, image, request, output, sendBytes);
+            System.out.format("filled %s in %.3f ms%n", output != null ? output : getDefaultOutput(image),
+                    (System.nanoTime() - start) / 1e6);
+            for (Map.Entry<String, String> e: response.entrySet()) {
+                System.out.format("%s = %s%n", e.getKey(), e.getValue());
+            }
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * sends a fill job to the server, and writes the filled image
+     * @param socket path of the server's socket
+     * @param image path of the image
+     * @param request other keys of the request, see FillServer
+     * @param output path to write the filled image to, or null to write it next to the image
+     * @param sendBytes if true the bytes of the image and the mask are sent, otherwise their paths
+     * @return the header of the response, the timings of the server
+     * @throws IOException in case the server can't be reached, or fails to fill the image
+     */
+    public static Map<String, String> fill(Path socket, Path image, Map<String, String> request, Path output,
+                                           boolean sendBytes) throws IOException {
+        byte[] imageBytes = new byte[0];
+        byte[] maskBytes = new byte[0];
+        request = new LinkedHashMap<>(request);
+        if (sendBytes) {
+            imageBytes = Files.readAllBytes(image);
+            String mask = request.remove("mask");
+            if (mask != null) {
+                maskBytes = Files.readAllBytes(Paths.get(mask));
+            }
+        } else {
+            request.put("image", image.toString());
+            if (output != null) {
+                request.put("output", output.toString());
+            }
+        }
+
+        try (SocketChannel channel = SocketChannel.open(StandardProtocolFamily.UNIX)) {
+            channel.connect(UnixDomainSocketAddress.of(socket));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+            out.writeUTF(FillServer.toHeader(request));
+            out.writeInt(imageBytes.length);
+            out.write(imageBytes);
+            out.writeInt(maskBytes.length);
+            out.write(maskBytes);
+            out.flush();
+
+            int status = in.readInt();
+            Map<String, String> response = FillServer.parseHeader(in.readUTF());
+            byte[] result = FillServer.readBytes(in);
+            if (status != FillServer.STATUS_OK) {
+                throw new IOException(response.get("error"));
+            }
+            // the server writes the image itself, unless it was sent to it
+            if (result.length > 0) {
+                Files.write(output != null ? output : getDefaultOutput(image), result);
+            }
+            return response;
+        }
+    }
+
+    private static Path getDefaultOutput(Path image) {
+        String name = image.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return image.resolveSibling((dot < 0 ? name : name.substring(0, dot)) + "_filled.png");
+    }
+
+    private static void putArg(Map<String, String> request, String key, String[] args, int i) {
+        if (isArgGiven(args, i)) {
+            request.put(key, args[i]);
+        }
+    }
+
+    private static boolean isArgGiven(String[] args, int i) {
+        return args.length > i && !args[i].equals(Defs.CMD_LINE_ARG_DEF);
+    }
+}
@@ -0,0 +1,57 @@
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * a fork/join task which fills a range of the missing pixels of a hole, according to algorithm in section 2
+ *
+ * in this algorithm every missing pixel's value depends only on the boundary pixels, and never on other missing
+ * pixels, so the range is simply split in halves until it's small enough, and every part is filled independently.
+ * each pixel is calculated exactly as in the sequential Utils.fillHole(), so the result is bit-identical to it
+ */
+public class FillHoleTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Raster raster;
+    private final long[] missing;
+    private final BoundarySamples boundaries;
+    private final int z;
+    private final double eps;
+    private final boolean simd;
+    private final WeightTable table;
+    private final int from;
+    private final int to;
+
+    /**
+     * @param r raster to fill
+     * @param m packed locations of the missing pixels of the hole, see Index.pack()
+     * @param b the boundary pixels of the hole, as they were gathered from r
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param simd if true VectorFill will be used, see Utils.fillHoleRange()
+     * @param t lookup table of the weights, or null, see Utils.fillHoleRange()
+     * @param from first index (inclusive) in m to fill
+     * @param to last index (exclusive) in m to fill
+     */
+    public FillHoleTask(Raster r, long[] m, BoundarySamples b, int z, double eps, boolean simd,
+                        WeightTable t, int from, int to) {
+        raster = r;
+        missing = m;
+        boundaries = b;
+        this.z = z;
+        this.eps = eps;
+        this.simd = simd;
+        table = t;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= Defs.PARALLEL_CHUNK_SIZE) {
+            Utils.fillHoleRange(raster, missing, boundaries, z, eps, simd, table, from, to);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        invokeAll(new FillHoleTask(raster, missing, boundaries, z, eps, simd, table, from, mid),
+                new FillHoleTask(raster, missing, boundaries, z, eps, simd, table, mid, to));
+    }
+}
@@ -0,0 +1,502 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * a precomputed fill of a mask, for filling the same missing pixels in many images, e.g the frames of a video.
+ *
+ * the formula of section 2 is linear in the values of the boundaries: every missing pixel is a weighted sum of the
+ * boundary pixels of its hole, with weights which depend only on the mask, z and eps. a plan holds these weights,
+ * normalized, so applying it to an image (see apply()) is a single pass which gathers the boundary values and
+ * multiplies them by the weights, without finding the holes or calculating a single weight.
+ *
+ * for algorithm 0 the weights are dense, unless there are more than Defs.FILL_PLAN_MAX_ENTRIES of them, in which
+ * case every missing pixel keeps only its nearest boundary pixels (see BoundaryGrid), as many as fit. for algorithm 5
+ * they are sparse, as the algorithm weights them, and a missing pixel which would take more than its share of
+ * Defs.FILL_PLAN_MAX_ENTRIES (e.g one with no boundary pixel within the radius) keeps only its nearest ones as well.
+ * getNeglectedWeight() bounds the weight which was left out.
+ *
+ * plans are cached by their mask (see get()), and may be saved to disk (see save() and load())
+ */
+public class FillPlan {
+    private static final int MAGIC = 0x46504c4e;
+    private static final int VERSION = 1;
+
+    // plans by their key, in access order
+    private static final LinkedHashMap<Key, FillPlan> cache = new LinkedHashMap<Key, FillPlan>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, FillPlan> eldest) {
+            return size() > Defs.FILL_PLAN_CACHE_SIZE;
+        }
+    };
+
+    private final Key key;
+
+    // packed locations (see Index.pack()) of the missing pixels and of the boundaries of all the holes
+    private final long[] missing;
+    private final long[] boundaries;
+
+    // the weights of missing pixel i are weights[start[i] .. start[i + 1]). the weight of entry e is of
+    // boundaries[index[e]], or in a dense plan (index is null) of boundaries[first[i] + e - start[i]]
+    private final int[] start;
+    private final int[] index;
+    private final int[] first;
+    private final double[] weights;
+
+    private final double neglectedWeight;
+
+    /**
+     * what a plan is built from. two keys are equal if their masks are equal, the hash of the mask is calculated once
+     */
+    private static class Key {
+        private final int height;
+        private final int width;
+        private final long[] mask;
+        private final int alg;
+        private final int z;
+        private final double eps;
+        private final double radius;
+        private final int k;
+        private final int hash;
+
+        Key(int height, int width, long[] mask, int alg, int z, double eps, double radius, int k) {
+            this.height = height;
+            this.width = width;
+            this.mask = mask;
+            this.alg = alg;
+            this.z = z;
+            this.eps = eps;
+            this.radius = radius;
+            this.k = k;
+            hash = 31 * Arrays.hashCode(mask) + Arrays.hashCode(new double[] {height, width, alg, z, eps, radius, k});
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hash == other.hash && height == other.height && width == other.width && alg == other.alg &&
+                    z == other.z && eps == other.eps && radius == other.radius && k == other.k &&
+                    Arrays.equals(mask, other.mask);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private FillPlan(Key key, long[] missing, long[] boundaries, int[] start, int[] index, int[] first,
+                     double[] weights, double neglectedWeight) {
+        this.key = key;
+        this.missing = missing;
+        this.boundaries = boundaries;
+        this.start = start;
+        this.index = index;
+        this.first = first;
+        this.weights = weights;
+        this.neglectedWeight = neglectedWeight;
+    }
+
+    /**
+     * returns the plan of the given mask from the cache, or builds it (see build()) and caches it.
+     * in case Defs.FILL_PLAN_DIR is set, a plan which isn't in the cache is loaded from there, and a plan which is
+     * built is saved there
+     * @param height height of the images
+     * @param width width of the images
+     * @param mask packed locations (see Index.pack()) of the missing pixels
+     * @param alg the algorithm to fill with, 0 or 5, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to build the plan with
+     * @return FillPlan
+     * @throws IOException in case the plan can't be saved to, or read from, Defs.FILL_PLAN_DIR
+     */
+    public static FillPlan get(int height, int width, long[] mask, int alg, int z, double eps, int parallelism)
+            throws IOException {
+        Key key = new Key(height, width, mask, alg, z, eps, Defs.CUTOFF_RADIUS, Defs.K_NEAREST);
+        synchronized (cache) {
+            FillPlan plan = cache.get(key);
+            if (plan != null) {
+                return plan;
+            }
+        }
+
+        FillPlan plan = null;
+        Path path = Defs.FILL_PLAN_DIR != null ?
+                Path.of(Defs.FILL_PLAN_DIR, String.format("plan_%08x.bin", key.hash)) : null;
+        if (path != null && Files.isRegularFile(path)) {
+            plan = load(path);
+            // a different mask with the same hash
+            if (!plan.key.equals(key)) {
+                plan = null;
+            }
+        }
+        if (plan == null) {
+            plan = build(key, parallelism);
+            if (path != null) {
+                plan.save(path);
+            }
+        }
+        synchronized (cache) {
+            cache.put(key, plan);
+        }
+        return plan;
+    }
+
+    /**
+     * builds the plan of the given mask, the arguments of algorithm 5 are taken from Defs
+     * @param height height of the images
+     * @param width width of the images
+     * @param mask packed locations (see Index.pack()) of the missing pixels
+     * @param alg the algorithm to fill with, 0 or 5, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     * @return FillPlan
+     */
+    public static FillPlan build(int height, int width, long[] mask, int alg, int z, double eps, int parallelism) {
+        return build(new Key(height, width, mask, alg, z, eps, Defs.CUTOFF_RADIUS, Defs.K_NEAREST), parallelism);
+    }
+
+    private static FillPlan build(Key key, int parallelism) {
+        if (key.alg != 0 && key.alg != 5) {
+            throw new IllegalArgumentException("fill plans support algorithms 0 and 5, not " + key.alg);
+        }
+
+        // the holes of the mask, found as in any image
+        Raster m = new Raster(key.height, key.width);
+        for (long p: key.mask) {
+            m.set(Index.rowOf(p), Index.colOf(p), Defs.HOLE_VALUE);
+        }
+        List<Hole> holes = Utils.findHoles(m, parallelism);
+
+        int n = 0;
+        int b = 0;
+        int maxBoundaries = 0;
+        long entries = 0;
+        for (Hole hole: holes) {
+            n += hole.getPackedMissingPixels().length;
+            b += hole.getPackedBoundariesPixels().length;
+            maxBoundaries = Math.max(maxBoundaries, hole.getPackedBoundariesPixels().length);
+            entries += (long) hole.getPackedMissingPixels().length * hole.getPackedBoundariesPixels().length;
+        }
+
+        // the holes' pixels are concatenated, first and sizes give the boundaries of the hole of every missing pixel
+        long[] missing = new long[n];
+        long[] boundaries = new long[b];
+        int[] first = new int[n];
+        int[] sizes = new int[n];
+        n = 0;
+        b = 0;
+        for (Hole hole: holes) {
+            long[] holeMissing = hole.getPackedMissingPixels();
+            long[] holeBoundaries = hole.getPackedBoundariesPixels();
+            System.arraycopy(holeMissing, 0, missing, n, holeMissing.length);
+            System.arraycopy(holeBoundaries, 0, boundaries, b, holeBoundaries.length);
+            Arrays.fill(first, n, n + holeMissing.length, b);
+            Arrays.fill(sizes, n, n + holeMissing.length, holeBoundaries.length);
+            n += holeMissing.length;
+            b += holeBoundaries.length;
+        }
+
+        if (key.alg == 0 && entries <= Defs.FILL_PLAN_MAX_ENTRIES) {
+            return buildDense(key, missing, boundaries, first, sizes, (int) entries, parallelism);
+        }
+        // every missing pixel takes at most its share of the maximal number of entries, so their number fits in the
+        // int offsets. algorithm 0 takes the nearest boundary pixels which fit, and algorithm 5 its own ones (in
+        // radius mode, or the k nearest), unless there are more of them
+        int cap = (int) Math.max(1, Math.min(maxBoundaries, Defs.FILL_PLAN_MAX_ENTRIES / Math.max(1, n)));
+        int k = key.alg == 5 ? Math.min(key.k, cap) : cap;
+        return buildSparse(key, m, missing, boundaries, first, sizes, k, cap, parallelism);
+    }
+
+    private static FillPlan buildDense(Key key, long[] missing, long[] boundaries, int[] first, int[] sizes,
+                                       int entries, int parallelism) {
+        int[] start = new int[missing.length + 1];
+        for (int i = 0; i < missing.length; i++) {
+            start[i + 1] = start[i] + sizes[i];
+        }
+        double[] weights = new double[entries];
+
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        Utils.parallelFor(chunks, parallelism, c -> {
+            for (int i = c * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (c + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                int row = Index.rowOf(missing[i]);
+                int col = Index.colOf(missing[i]);
+                double weightsSum = 0;
+                for (int e = start[i]; e < start[i + 1]; e++) {
+                    long p = boundaries[first[i] + e - start[i]];
+                    int dr = Index.rowOf(p) - row;
+                    int dc = Index.colOf(p) - col;
+                    weights[e] = 1.0 / (Utils.distPow(dr * dr + dc * dc, key.z) + key.eps);
+                    weightsSum += weights[e];
+                }
+                for (int e = start[i]; e < start[i + 1]; e++) {
+                    weights[e] /= weightsSum;
+                }
+            }
+        });
+        return new FillPlan(key, missing, boundaries, start, null, first, weights, 0);
+    }
+
+    private static FillPlan buildSparse(Key key, Raster m, long[] missing, long[] boundaries, int[] first,
+                                        int[] sizes, int k, int cap, int parallelism) {
+        // a grid per hole, by the index of its first boundary pixel. the grids use only the locations of the pixels,
+        // so they are gathered from the mask
+        Map<Integer, BoundaryGrid> grids = new HashMap<>();
+        for (int i = 0; i < missing.length; i++) {
+            if (!grids.containsKey(first[i])) {
+                long[] holeBoundaries = Arrays.copyOfRange(boundaries, first[i], first[i] + sizes[i]);
+                grids.put(first[i], new BoundaryGrid(BoundarySamples.gather(m, holeBoundaries)));
+            }
+        }
+
+        // every chunk collects its entries separately, since their number isn't known in advance
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        int[][] chunkIndex = new int[chunks][];
+        double[][] chunkWeights = new double[chunks][];
+        int[] counts = new int[missing.length];
+        double[] bounds = new double[chunks];
+        Utils.parallelFor(chunks, parallelism, c -> {
+            BoundaryGrid.Buffers buffers = new BoundaryGrid.Buffers(k);
+            BoundaryGrid.Buffers nearest = null;
+            double[] out = new double[2];
+            int[] idx = new int[Defs.PARALLEL_CHUNK_SIZE];
+            double[] w = new double[Defs.PARALLEL_CHUNK_SIZE];
+            int size = 0;
+            for (int i = c * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (c + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                BoundaryGrid grid = grids.get(first[i]);
+                BoundaryGrid.Buffers b = buffers;
+                int n = grid.getWeights(Index.rowOf(missing[i]), Index.colOf(missing[i]), key.z, key.eps, key.radius,
+                        k, b, out);
+                if (n > cap) {
+                    if (nearest == null) {
+                        nearest = new BoundaryGrid.Buffers(cap);
+                    }
+                    b = nearest;
+                    n = grid.getWeights(Index.rowOf(missing[i]), Index.colOf(missing[i]), key.z, key.eps,
+                            key.radius, cap, b, out);
+                }
+                if (size + n > idx.length) {
+                    idx = Arrays.copyOf(idx, Math.max(2 * idx.length, size + n));
+                    w = Arrays.copyOf(w, idx.length);
+                }
+                for (int j = 0; j < n; j++) {
+                    idx[size + j] = first[i] + b.getIndices()[j];
+                    w[size + j] = b.getWeights()[j];
+                }
+                size += n;
+                counts[i] = n;
+                bounds[c] = Math.max(bounds[c], out[1]);
+            }
+            chunkIndex[c] = Arrays.copyOf(idx, size);
+            chunkWeights[c] = Arrays.copyOf(w, size);
+        });
+
+        int[] start = new int[missing.length + 1];
+        for (int i = 0; i < missing.length; i++) {
+            start[i + 1] = start[i] + counts[i];
+        }
+        int[] index = new int[start[missing.length]];
+        double[] weights = new double[index.length];
+        double neglectedWeight = 0;
+        for (int c = 0; c < chunks; c++) {
+            int from = start[c * Defs.PARALLEL_CHUNK_SIZE];
+            System.arraycopy(chunkIndex[c], 0, index, from, chunkIndex[c].length);
+            System.arraycopy(chunkWeights[c], 0, weights, from, chunkWeights[c].length);
+            neglectedWeight = Math.max(neglectedWeight, bounds[c]);
+        }
+        return new FillPlan(key, missing, boundaries, start, index, first, weights, neglectedWeight);
+    }
+
+    /**
+     * fills the missing pixels of the mask in the given image, according to the plan
+     * @param r the image, of the size of the plan, the values of its missing pixels are ignored
+     * @param parallelism number of threads to use
+     */
+    public void apply(Raster r, int parallelism) {
+        if (r.getHeight() != key.height || r.getWidth() != key.width) {
+            throw new IllegalArgumentException("the plan is for " + key.height + "x" + key.width + " images, not " +
+                    r.getHeight() + "x" + r.getWidth());
+        }
+        double[] values = new double[boundaries.length];
+        for (int j = 0; j < boundaries.length; j++) {
+            values[j] = r.get(Index.rowOf(boundaries[j]), Index.colOf(boundaries[j]));
+        }
+
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        Utils.parallelFor(chunks, parallelism, c -> {
+            for (int i = c * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (c + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                double sum = 0;
+                if (index == null) {
+                    int offset = first[i] - start[i];
+                    for (int e = start[i]; e < start[i + 1]; e++) {
+                        sum += weights[e] * values[offset + e];
+                    }
+                } else {
+                    for (int e = start[i]; e < start[i + 1]; e++) {
+                        sum += weights[e] * values[index[e]];
+                    }
+                }
+                r.set(Index.rowOf(missing[i]), Index.colOf(missing[i]), sum);
+            }
+        });
+    }
+
+    /**
+     * writes the plan to the given file, see load(). the plan is written to a temporary file which is then moved to
+     * the given path, so other threads and processes never load a partly written plan
+     * @param path path of the file
+     * @throws IOException in case the file can't be written
+     */
+    public void save(Path path) throws IOException {
+        Path tmp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try {
+            write(tmp);
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private void write(Path path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(key.height);
+            out.writeInt(key.width);
+            out.writeInt(key.alg);
+            out.writeInt(key.z);
+            out.writeDouble(key.eps);
+            out.writeDouble(key.radius);
+            out.writeInt(key.k);
+            out.writeDouble(neglectedWeight);
+            writeLongs(out, key.mask);
+            writeLongs(out, missing);
+            writeLongs(out, boundaries);
+            writeInts(out, start);
+            writeInts(out, first);
+            out.writeBoolean(index != null);
+            if (index != null) {
+                writeInts(out, index);
+            }
+            out.writeInt(weights.length);
+            for (double w: weights) {
+                out.writeDouble(w);
+            }
+        }
+    }
+
+    /**
+     * reads a plan which was written by save()
+     * @param path path of the file
+     * @return FillPlan
+     * @throws IOException in case the file can't be read, or isn't a plan
+     */
+    public static FillPlan load(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(path + " isn't a fill plan of this version");
+            }
+            int height = in.readInt();
+            int width = in.readInt();
+            int alg = in.readInt();
+            int z = in.readInt();
+            double eps = in.readDouble();
+            double radius = in.readDouble();
+            int k = in.readInt();
+            double neglectedWeight = in.readDouble();
+            Key key = new Key(height, width, readLongs(in), alg, z, eps, radius, k);
+            long[] missing = readLongs(in);
+            long[] boundaries = readLongs(in);
+            int[] start = readInts(in);
+            int[] first = readInts(in);
+            int[] index = in.readBoolean() ? readInts(in) : null;
+            double[] weights = new double[in.readInt()];
+            for (int i = 0; i < weights.length; i++) {
+                weights[i] = in.readDouble();
+            }
+            return new FillPlan(key, missing, boundaries, start, index, first, weights, neglectedWeight);
+        }
+    }
+
+    private static void writeLongs(DataOutputStream out, long[] a) throws IOException {
+        out.writeInt(a.length);
+        for (long v: a) {
+            out.writeLong(v);
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] a) throws IOException {
+        out.writeInt(a.length);
+        for (int v: a) {
+            out.writeInt(v);
+        }
+    }
+
+    private static long[] readLongs(DataInputStream in) throws IOException {
+        long[] a = new long[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readLong();
+        }
+        return a;
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] a = new int[in.readInt()];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = in.readInt();
+        }
+        return a;
+    }
+
+    /**
+     * @return packed locations of the missing pixels which the plan fills
+     */
+    public long[] getMissingPixels() {
+        return missing;
+    }
+
+    /**
+     * @return number of weights in the plan
+     */
+    public int getEntries() {
+        return weights.length;
+    }
+
+    /**
+     * @return true if every missing pixel is weighted from all the boundary pixels of its hole
+     */
+    public boolean isDense() {
+        return index == null;
+    }
+
+    /**
+     * @return a bound on the relative weight of the boundary pixels which the plan leaves out, the maximum over
+     * the missing pixels. 0 for a dense plan
+     */
+    public double getNeglectedWeight() {
+        return neglectedWeight;
+    }
+}
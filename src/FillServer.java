@@ -0,0 +1,273 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.ProtocolException;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * a resident fill server, which accepts fill jobs over a local Unix domain socket, so the JVM startup, the loading
+ * of the native library and the JIT warm up are paid once, and not per image. see FillClient.
+ *
+ * every connection is served by its own thread: a virtual thread when the JVM has them (Java 21, looked up by
+ * reflection, so this compiles and runs on older JDKs as well), otherwise a thread of a cached pool. the connection
+ * threads only read the requests from the socket and write the responses, all the CPU work of the jobs (decode, hole
+ * detection, fill and encode) runs on a fixed pool of Defs.SERVER_WORKERS threads, so many connections never run more
+ * jobs than there are cores. every job runs in a single thread of the pool, the server is parallel across jobs and
+ * not inside one.
+ *
+ * the protocol, in java.io.DataOutput encoding, any number of requests per connection:
+ *     request:  header (UTF) | image length (int) | image bytes | mask length (int) | mask bytes
+ *     response: status (int, STATUS_OK or STATUS_ERROR) | header (UTF) | result length (int) | result bytes
+ * the lengths are at most Defs.SERVER_MAX_MESSAGE_BYTES, a request with an invalid length is answered with an error,
+ * and its connection is closed.
+ * a header holds "key=value" lines. the keys of a request are: image - path of the image (in case its bytes aren't
+ * sent), mask - path of the mask (a pixel is missing where its mask is brighter than middle gray, as in BatchRunner,
+ * without a mask the mock hole is set), alg, z, eps, and output -
+ * a path to write the filled image to, in case it isn't, the filled image is sent back as png.
+ * the header of a response holds the timings of the job in milliseconds (and the bound on the neglected weight of a
+ * fill plan, in ppm, see FillPlan.getNeglectedWeight()), or the error message
+ */
+public class FillServer {
+    public static final int STATUS_OK = 0;
+    public static final int STATUS_ERROR = 1;
+
+    /**
+     * serves jobs on the given socket, until the process is killed. on POSIX file systems only the owner of the
+     * process may connect to the socket (its permissions are rw-------), since the jobs read and write files with the
+     * permissions of the server
+     * @param socketPath path of the socket, an existing file in this path is deleted
+     * @param workers number of threads which run the fills
+     * @throws IOException in case the socket can't be bound
+     */
+    public static void run(Path socketPath, int workers) throws IOException {
+        Files.deleteIfExists(socketPath);
+        ExecutorService cpu = Executors.newFixedThreadPool(workers);
+        ExecutorService connections = newConnectionExecutor();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(socketPath);
+            } catch (IOException e) {
+                // the process exits anyway
+            }
+        }));
+
+        try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socketPath));
+            // a job reads and writes any path the server can, so only the owner may connect
+            try {
+                Files.setPosixFilePermissions(socketPath, PosixFilePermissions.fromString("rw-------"));
+            } catch (UnsupportedOperationException e) {
+                // not a POSIX file system (Windows), the socket gets the permissions of its directory
+            }
+            System.out.format("serving on %s with %d workers%n", socketPath, workers);
+            while (true) {
+                SocketChannel channel = server.accept();
+                connections.execute(() -> serve(channel, cpu));
+            }
+        }
+    }
+
+    /**
+     * @return an executor which runs every task in a new virtual thread, if the JVM has them, otherwise
+     * a cached thread pool
+     */
+    private static ExecutorService newConnectionExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    private static void serve(SocketChannel channel, ExecutorService cpu) {
+        try (channel;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                     Channels.newOutputStream(channel)))) {
+            while (true) {
+                Map<String, String> request;
+                try {
+                    request = parseHeader(in.readUTF());
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] image;
+                byte[] mask;
+                Map<String, String> response = new LinkedHashMap<>();
+                try {
+                    image = readBytes(in);
+                    mask = readBytes(in);
+                } catch (ProtocolException e) {
+                    // the rest of the request can't be read, so the connection is closed after the error
+                    response.put("error", e.getMessage());
+                    writeResponse(out, STATUS_ERROR, response, new byte[0]);
+                    return;
+                }
+
+                try {
+                    byte[] result = runJob(request, image, mask, response, cpu);
+                    writeResponse(out, STATUS_OK, response, result);
+                } catch (Exception e) {
+                    Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                    response.clear();
+                    response.put("error", String.valueOf(cause.getMessage()));
+                    writeResponse(out, STATUS_ERROR, response, new byte[0]);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    private static void writeResponse(DataOutputStream out, int status, Map<String, String> response, byte[] result)
+            throws IOException {
+        out.writeInt(status);
+        out.writeUTF(toHeader(response));
+        out.writeInt(result.length);
+        out.write(result);
+        out.flush();
+    }
+
+    /**
+     * decodes, fills and encodes a single image on the CPU pool, the timings of the phases are put in response
+     * @return the filled image as png, or an empty array in case it was written to the output path
+     */
+    private static byte[] runJob(Map<String, String> request, byte[] imageBytes, byte[] maskBytes,
+                                 Map<String, String> response, ExecutorService cpu) throws Exception {
+        int alg = request.containsKey("alg") ? Integer.parseInt(request.get("alg")) : Defs.ALG;
+        int z = request.containsKey("z") ? Integer.parseInt(request.get("z")) :
+                (alg == 1 || alg == 4 ? Defs.Z_CIRC_DEF : Defs.Z_DEF);
+        double eps = request.containsKey("eps") ? Double.parseDouble(request.get("eps")) : Defs.EPSILON;
+
+        // all the CPU work (decode, fill and encode) runs on the bounded pool, the connection's thread only reads
+        // the request and writes the response
+        long queued = System.nanoTime();
+        Future<byte[]> job = cpu.submit(() -> {
+            putTime(response, "queue", queued);
+            long start = System.nanoTime();
+            BufferedImage img = read(imageBytes, request.get("image"));
+            BufferedImage maskImg = maskBytes.length > 0 || request.containsKey("mask") ?
+                    read(maskBytes, request.get("mask")) : null;
+            Raster raster = Utils.toGray(img);
+            Index[] missingPixels = BatchRunner.getMissingPixels(maskImg != null ? Utils.toGray(maskImg) : null,
+                    raster.getHeight(), raster.getWidth());
+            MockUtils.setMockHole(raster, missingPixels);
+            putTime(response, "decode", start);
+
+            long t = System.nanoTime();
+            if (BatchRunner.usePlans(alg)) {
+                FillPlan plan = FillPlan.get(raster.getHeight(), raster.getWidth(), Index.pack(missingPixels), alg, z,
+                        eps, 1);
+                plan.apply(raster, 1);
+                // a plan which exceeds Defs.FILL_PLAN_MAX_ENTRIES leaves out boundary pixels, as algorithm 5 does
+                long neglected = Math.round(plan.getNeglectedWeight() * 1e6);
+                response.put("neglected_weight_ppm", String.valueOf(neglected));
+                Defs.METRICS.addMax(Metrics.NEGLECTED_WEIGHT_PPM, neglected);
+            } else {
+                // in the worker's thread, a parallelism above 1 would run on a fork/join pool outside of the workers
+                List<Hole> holes = Utils.findHoles(raster, 1);
+                putTime(response, "detect", t);
+                t = System.nanoTime();
+                Utils.fillHoles(raster, holes, alg, z, eps, 1);
+                Defs.METRICS.addHoleCounts(holes, alg);
+            }
+            putTime(response, "fill", t);
+            Defs.METRICS.addCount(Metrics.IMAGES, 1);
+
+            start = System.nanoTime();
+            byte[] result;
+            if (request.containsKey("output")) {
+                String output = request.get("output");
+                int dot = output.lastIndexOf('.');
+                Utils.writeImg(raster.toGrayImg(), dot < 0 ? "png" : output.substring(dot + 1), new File(output));
+                result = new byte[0];
+            } else {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                ImageIO.write(raster.toGrayImg(), "png", bytes);
+                result = bytes.toByteArray();
+            }
+            putTime(response, "encode", start);
+            return result;
+        });
+        return job.get();
+    }
+
+    private static void putTime(Map<String, String> response, String phase, long start) {
+        response.put(phase + "_ms", String.format(Locale.ROOT, "%.3f", (System.nanoTime() - start) / 1e6));
+    }
+
+    private static BufferedImage read(byte[] bytes, String path) throws IOException {
+        if (bytes.length == 0 && path == null) {
+            throw new IOException("no image was given");
+        }
+        BufferedImage img = bytes.length > 0 ? ImageIO.read(new ByteArrayInputStream(bytes)) :
+                ImageIO.read(new File(path));
+        if (img == null) {
+            throw new IOException("can't decode " + (bytes.length > 0 ? "the sent image" : path));
+        }
+        return img;
+    }
+
+    /**
+     * reads a length, and as many bytes
+     * @throws ProtocolException in case the length is negative, or above Defs.SERVER_MAX_MESSAGE_BYTES
+     */
+    static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > Defs.SERVER_MAX_MESSAGE_BYTES) {
+            throw new ProtocolException("invalid length " + length + ", the maximum is " +
+                    Defs.SERVER_MAX_MESSAGE_BYTES);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * @param header "key=value" lines
+     * @return the values by their keys, in their order
+     */
+    static Map<String, String> parseHeader(String header) {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (String line: header.split("\n")) {
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+                values.put(line.substring(0, eq), line.substring(eq + 1));
+            }
+        }
+        return values;
+    }
+
+    static String toHeader(Map<String, String> values) {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> e: values.entrySet()) {
+            sb.append(e.getKey()).append('=').append(e.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+}
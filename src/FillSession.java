@@ -0,0 +1,237 @@
+import java.util.Arrays;
+
+/**
+ * a stateful fill, according to algorithm in section 2, for a mask which is edited a few pixels at a time
+ * (e.g by an interactive tool).
+ *
+ * every missing pixel's value is num / den, where num and den are sums over the boundary pixels (w * value, w).
+ * the session keeps these sums for every missing pixel, so when the mask is changed (see update()), only the
+ * contributions of the boundary pixels which were removed or added are subtracted or added, and only the pixels
+ * which became missing are calculated over all the boundaries. an edit costs O(changed boundary pixels * missing
+ * pixels + newly missing pixels * boundary pixels), instead of O(missing pixels * boundary pixels).
+ *
+ * the result is the same as Utils.fillHole() of Utils.findHole() of the masked image (up to floating point
+ * rounding of the accumulated sums, see refresh()). the sums are kept in dense arrays of the image's size
+ */
+public class FillSession {
+    private static final int[][] FOUR_NEIGHBORS = {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
+
+    // the original values of the image, and the image with the missing pixels filled
+    private final Raster image;
+    private final Raster output;
+
+    private final WeightKernel kernel;
+    private final int parallelism;
+
+    private final double[] num;
+    private final double[] den;
+
+    private final PixelList missing;
+    private final PixelList boundaries;
+
+    /**
+     * a set of pixels which supports removal, with a position per pixel of the image
+     */
+    private static class PixelList {
+        private final int width;
+        private final int[] pos;
+        private long[] pixels = new long[16];
+        private int size = 0;
+
+        PixelList(int h, int w) {
+            width = w;
+            pos = new int[h * w];
+            Arrays.fill(pos, -1);
+        }
+
+        boolean contains(int row, int col) {
+            return pos[row * width + col] >= 0;
+        }
+
+        void add(long p) {
+            if (size == pixels.length) {
+                pixels = Arrays.copyOf(pixels, size * 2);
+            }
+            pos[Index.rowOf(p) * width + Index.colOf(p)] = size;
+            pixels[size++] = p;
+        }
+
+        void remove(long p) {
+            int i = pos[Index.rowOf(p) * width + Index.colOf(p)];
+            long last = pixels[--size];
+            pixels[i] = last;
+            pos[Index.rowOf(last) * width + Index.colOf(last)] = i;
+            pos[Index.rowOf(p) * width + Index.colOf(p)] = -1;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(pixels, size);
+        }
+    }
+
+    /**
+     * @param img the image, without missing pixels, it's copied
+     * @param k the weights function, it must be safe to call from several threads if parallelism > 1
+     * @param parallelism number of threads to use
+     */
+    public FillSession(Raster img, WeightKernel k, int parallelism) {
+        image = img.copy();
+        output = img.copy();
+        kernel = k;
+        this.parallelism = parallelism;
+        num = new double[image.getHeight() * image.getWidth()];
+        den = new double[num.length];
+        missing = new PixelList(image.getHeight(), image.getWidth());
+        boundaries = new PixelList(image.getHeight(), image.getWidth());
+    }
+
+    /**
+     * changes the mask, and updates the filled values of all the missing pixels
+     * @param added packed locations (see Index.pack()) of pixels which became missing
+     * @param removed packed locations of pixels which are no longer missing, they get their original values back
+     */
+    public void update(long[] added, long[] removed) {
+        PixelSet newlyMissing = new PixelSet(added.length);
+        PixelSet candidates = new PixelSet(4 * (added.length + removed.length));
+        for (long p: added) {
+            int row = Index.rowOf(p);
+            int col = Index.colOf(p);
+            if (image.contains(row, col) && !missing.contains(row, col)) {
+                missing.add(p);
+                newlyMissing.add(p);
+                addCandidates(p, candidates);
+            }
+        }
+        for (long p: removed) {
+            int row = Index.rowOf(p);
+            int col = Index.colOf(p);
+            if (image.contains(row, col) && missing.contains(row, col)) {
+                missing.remove(p);
+                num[row * image.getWidth() + col] = 0;
+                den[row * image.getWidth() + col] = 0;
+                output.set(row, col, image.get(row, col));
+                addCandidates(p, candidates);
+            }
+        }
+
+        // the boundary pixels (4-connectivity, as in Utils.findHole()) can change only around the changed pixels
+        PixelSet addedBoundaries = new PixelSet();
+        PixelSet removedBoundaries = new PixelSet();
+        for (long p: candidates.toArray()) {
+            int row = Index.rowOf(p);
+            int col = Index.colOf(p);
+            boolean isBoundary = !missing.contains(row, col) && hasMissingNeighbor(row, col);
+            if (isBoundary && !boundaries.contains(row, col)) {
+                boundaries.add(p);
+                addedBoundaries.add(p);
+            } else if (!isBoundary && boundaries.contains(row, col)) {
+                boundaries.remove(p);
+                removedBoundaries.add(p);
+            }
+        }
+
+        BoundarySamples plus = BoundarySamples.gather(image, addedBoundaries.toArray());
+        BoundarySamples minus = BoundarySamples.gather(image, removedBoundaries.toArray());
+        BoundarySamples all = newlyMissing.size() > 0 ? BoundarySamples.gather(image, boundaries.toArray()) : null;
+
+        long[] m = missing.toArray();
+        int chunks = (m.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        Utils.parallelFor(chunks, parallelism, k -> {
+            double[] w = new double[Math.max(all != null ? all.size() : 0, Math.max(plus.size(), minus.size()))];
+            for (int i = k * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(m.length, (k + 1) * Defs.PARALLEL_CHUNK_SIZE);
+                 i++) {
+                int row = Index.rowOf(m[i]);
+                int col = Index.colOf(m[i]);
+                int j = row * image.getWidth() + col;
+                if (newlyMissing.contains(m[i])) {
+                    num[j] = 0;
+                    den[j] = 0;
+                    accumulate(row, col, all, 1, w);
+                } else {
+                    accumulate(row, col, plus, 1, w);
+                    accumulate(row, col, minus, -1, w);
+                }
+                output.set(row, col, num[j] / den[j]);
+            }
+        });
+    }
+
+    /**
+     * calculates the sums of all the missing pixels from scratch, over all the boundaries, to drop the rounding
+     * errors which the sums accumulate along many updates
+     */
+    public void refresh() {
+        long[] m = missing.toArray();
+        BoundarySamples all = BoundarySamples.gather(image, boundaries.toArray());
+        int chunks = (m.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        Utils.parallelFor(chunks, parallelism, k -> {
+            double[] w = new double[all.size()];
+            for (int i = k * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(m.length, (k + 1) * Defs.PARALLEL_CHUNK_SIZE);
+                 i++) {
+                int row = Index.rowOf(m[i]);
+                int col = Index.colOf(m[i]);
+                int j = row * image.getWidth() + col;
+                num[j] = 0;
+                den[j] = 0;
+                accumulate(row, col, all, 1, w);
+                output.set(row, col, num[j] / den[j]);
+            }
+        });
+    }
+
+    /**
+     * adds (sign 1) or subtracts (sign -1) the contributions of the given boundary pixels to the sums of
+     * the given missing pixel
+     */
+    private void accumulate(int row, int col, BoundarySamples b, int sign, double[] w) {
+        int n = b.size();
+        if (n == 0) {
+            return;
+        }
+        kernel.weights(row, col, b.getRows(), b.getCols(), n, w);
+        double[] values = b.getValues();
+        double sum = 0;
+        double weightsSum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += values[i] * w[i];
+            weightsSum += w[i];
+        }
+        int j = row * image.getWidth() + col;
+        num[j] += sign * sum;
+        den[j] += sign * weightsSum;
+    }
+
+    private void addCandidates(long p, PixelSet candidates) {
+        int row = Index.rowOf(p);
+        int col = Index.colOf(p);
+        candidates.add(p);
+        for (int[] d: FOUR_NEIGHBORS) {
+            if (image.contains(row + d[0], col + d[1])) {
+                candidates.add(row + d[0], col + d[1]);
+            }
+        }
+    }
+
+    private boolean hasMissingNeighbor(int row, int col) {
+        for (int[] d: FOUR_NEIGHBORS) {
+            if (image.contains(row + d[0], col + d[1]) && missing.contains(row + d[0], col + d[1])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the current missing and boundary pixels
+     */
+    public Hole toHole() {
+        return new Hole(missing.toArray(), boundaries.toArray());
+    }
+
+    /**
+     * @return the image, with the current missing pixels filled
+     */
+    public Raster getRaster() {
+        return output;
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * a java-heap, row-major representation of a single channel image in fixed point: every value is held as an int,
+ * multiplied by 2^FRACTION_BITS, see Defs.PRECISION.
+ * it's used by the circular algorithm, which only averages neighboring pixels, so all its arithmetic is done
+ * on integers
+ */
+public class FixedRaster {
+    public static final int FRACTION_BITS = 16;
+    public static final int ONE = 1 << FRACTION_BITS;
+
+    // Defs.HOLE_VALUE in fixed point
+    public static final int HOLE_VALUE = (int) Math.round(Defs.HOLE_VALUE * ONE);
+
+    private final int[] data;
+    private final int width;
+    private final int height;
+
+    public FixedRaster(int h, int w) {
+        height = h;
+        width = w;
+        data = new int[h * w];
+    }
+
+    /**
+     * @param r the raster to copy from
+     * @param top first row of the area to copy
+     * @param left first col of the area to copy
+     * @param h height of the area to copy
+     * @param w width of the area to copy
+     * @return FixedRaster holding the values of the area of r, rounded to the nearest fixed point value
+     */
+    public static FixedRaster fromRaster(Raster r, int top, int left, int h, int w) {
+        FixedRaster f = new FixedRaster(h, w);
+        for (int i = 0; i < h; i++) {
+            for (int j = 0; j < w; j++) {
+                f.data[i * w + j] = (int) Math.round(r.get(top + i, left + j) * ONE);
+            }
+        }
+        return f;
+    }
+
+    /**
+     * copies the given pixels of this raster to r, converted back to doubles, in which this raster starts at
+     * (top, left)
+     * @param r raster to copy to
+     * @param pixels packed locations of the pixels to copy, in this raster, see Index.pack()
+     * @param top the row of r of the first row of this raster
+     * @param left the col of r of the first col of this raster
+     */
+    public void copyTo(Raster r, long[] pixels, int top, int left) {
+        for (long p: pixels) {
+            r.set(top + Index.rowOf(p), left + Index.colOf(p), (double) get(Index.rowOf(p), Index.colOf(p)) / ONE);
+        }
+    }
+
+    public int get(int row, int col) {
+        return data[row * width + col];
+    }
+
+    public void set(int row, int col, int v) {
+        data[row * width + col] = v;
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+    public int[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
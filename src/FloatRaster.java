@@ -0,0 +1,71 @@
+/**
+ * a java-heap, row-major representation of a single channel image in single precision, see Defs.PRECISION.
+ * the input images are 8-bit, so every input pixel (and Defs.HOLE_VALUE) is represented exactly, and the raster
+ * takes half of the memory of a Raster
+ */
+public class FloatRaster {
+    private final float[] data;
+    private final int width;
+    private final int height;
+
+    public FloatRaster(int h, int w) {
+        height = h;
+        width = w;
+        data = new float[h * w];
+    }
+
+    /**
+     * @param r the raster to copy from
+     * @param top first row of the area to copy
+     * @param left first col of the area to copy
+     * @param h height of the area to copy
+     * @param w width of the area to copy
+     * @return FloatRaster holding the values of the area of r, rounded to single precision
+     */
+    public static FloatRaster fromRaster(Raster r, int top, int left, int h, int w) {
+        FloatRaster f = new FloatRaster(h, w);
+        for (int i = 0; i < h; i++) {
+            for (int j = 0; j < w; j++) {
+                f.data[i * w + j] = (float) r.get(top + i, left + j);
+            }
+        }
+        return f;
+    }
+
+    /**
+     * copies the given pixels of this raster to r, in which this raster starts at (top, left)
+     * @param r raster to copy to
+     * @param pixels packed locations of the pixels to copy, in this raster, see Index.pack()
+     * @param top the row of r of the first row of this raster
+     * @param left the col of r of the first col of this raster
+     */
+    public void copyTo(Raster r, long[] pixels, int top, int left) {
+        for (long p: pixels) {
+            r.set(top + Index.rowOf(p), left + Index.colOf(p), get(Index.rowOf(p), Index.colOf(p)));
+        }
+    }
+
+    public float get(int row, int col) {
+        return data[row * width + col];
+    }
+
+    public void set(int row, int col, float v) {
+        data[row * width + col] = v;
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+    public float[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+}
@@ -1,28 +1,116 @@
 /**
  * an object which represents a hole in an image
+ *
+ * the pixels are held as packed locations (see Index.pack()), the Index[] getters are views which are created
+ * only when they are first called
  */
 public class Hole {
-    private Index[] missingPixels;
-    private Index[] boundariesPixels;
+    private long[] missingPixels;
+    private long[] boundariesPixels;
+
+    // lazily created views of the packed arrays
+    private Index[] missingPixelsView;
+    private Index[] boundariesPixelsView;
+
+    // bounding box of both the missing pixels and the boundaries pixels
+    private int minRow;
+    private int maxRow;
+    private int minCol;
+    private int maxCol;
 
     public Hole(Index[] m, Index[] b) {
+        this(Index.pack(m), Index.pack(b));
+    }
+
+    public Hole(long[] m, long[] b) {
         missingPixels = m;
         boundariesPixels = b;
+        updateBoundingBox();
+    }
+
+    /**
+     * sets the bounding box according to the current missing pixels and boundaries pixels
+     */
+    private void updateBoundingBox() {
+        minRow = Integer.MAX_VALUE;
+        maxRow = Integer.MIN_VALUE;
+        minCol = Integer.MAX_VALUE;
+        maxCol = Integer.MIN_VALUE;
+        for (long[] pixels: new long[][] {missingPixels, boundariesPixels}) {
+            for (long p: pixels) {
+                minRow = Math.min(minRow, Index.rowOf(p));
+                maxRow = Math.max(maxRow, Index.rowOf(p));
+                minCol = Math.min(minCol, Index.colOf(p));
+                maxCol = Math.max(maxCol, Index.colOf(p));
+            }
+        }
+    }
+
+    /**
+     * returns a new Hole with the same pixels, moved by the given offset, e.g to the coordinates of a tile
+     * @param dr rows offset
+     * @param dc cols offset
+     * @return Hole
+     */
+    public Hole translate(int dr, int dc) {
+        return new Hole(translate(missingPixels, dr, dc), translate(boundariesPixels, dr, dc));
+    }
+
+    private static long[] translate(long[] pixels, int dr, int dc) {
+        long[] moved = new long[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            moved[i] = Index.pack(Index.rowOf(pixels[i]) + dr, Index.colOf(pixels[i]) + dc);
+        }
+        return moved;
+    }
+
+    public synchronized Index[] getBoundariesPixels() {
+        if (boundariesPixelsView == null) {
+            boundariesPixelsView = Index.unpack(boundariesPixels, boundariesPixels.length);
+        }
+        return boundariesPixelsView;
     }
 
-    public Index[] getBoundariesPixels() {
+    public synchronized Index[] getMissingPixels() {
+        if (missingPixelsView == null) {
+            missingPixelsView = Index.unpack(missingPixels, missingPixels.length);
+        }
+        return missingPixelsView;
+    }
+
+    public long[] getPackedBoundariesPixels() {
         return boundariesPixels;
     }
 
-    public Index[] getMissingPixels() {
+    public long[] getPackedMissingPixels() {
         return missingPixels;
     }
 
-    public void setMissingPixels(Index[] m) {
-        missingPixels = m;
+    public int getMinRow() {
+        return minRow;
     }
 
-    public void setBoundariesPixels(Index[] b) {
-        boundariesPixels = b;
+    public int getMaxRow() {
+        return maxRow;
+    }
+
+    public int getMinCol() {
+        return minCol;
+    }
+
+    public int getMaxCol() {
+        return maxCol;
+    }
+
+    public synchronized void setMissingPixels(Index[] m) {
+        missingPixels = Index.pack(m);
+        missingPixelsView = m;
+        updateBoundingBox();
+    }
+
+    public synchronized void setBoundariesPixels(Index[] b) {
+        boundariesPixels = Index.pack(b);
+        boundariesPixelsView = b;
+        updateBoundingBox();
     }
 }
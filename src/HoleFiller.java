@@ -1,11 +1,10 @@
 import org.opencv.core.*;
-import org.opencv.imgproc.Imgproc;
-import static org.opencv.core.CvType.CV_64FC1;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
 import java.awt.image.DataBufferByte;
 import java.io.File;
+import java.util.List;
 
 /**
  * a class which uses to load an image, manipulate it, and output the manipulated image
@@ -13,11 +12,16 @@ import java.io.File;
 public class HoleFiller {
 
     private String inputImgPath;
+
+    // 8-bit grayscale view of the image, which is written to the output. see updateImgFromRaster()
     private BufferedImage img;
 
-    // holds pixel values in double type, in order to run our algorithm's mathematical operations conveniently
+    // holds pixel values in double type, created from the raster only when it's requested, see getMat()
     private MatOfDouble mat;
 
+    // the pixel values in double type, which our algorithms work on. see Raster class
+    private Raster raster;
+
     // holds information of the hole in the image
     private Hole hole;
 
@@ -28,50 +32,76 @@ public class HoleFiller {
 
     /**
      * loads rgb image from the specified path, coverts it to grayscale and sets the following members:
-     * inputImgPath, img, mat, scaledMat
+     * inputImgPath, img, raster
+     *
+     * the decoded bytes are converted to grayscale straight into the raster, in a single pass, with the same
+     * arithmetic as OpenCv's COLOR_RGB2GRAY (see Utils.toGray()), so no Mat is involved
      * @param path path to the input image
      */
     private void loadGrayScaleImg(String path){
         try {
-            File input = new File(path);
-            BufferedImage srcImg = ImageIO.read(input);
-
-            byte[] srcData = ((DataBufferByte) srcImg.getRaster().getDataBuffer()).getData();
-            Mat srcMat = new Mat(srcImg.getHeight(), srcImg.getWidth(), CvType.CV_8UC3);
-            srcMat.put(0, 0, srcData);
-
-            Mat dstMat = new Mat(srcImg.getHeight(),srcImg.getWidth(),CvType.CV_8UC1);
-            Imgproc.cvtColor(srcMat, dstMat, Imgproc.COLOR_RGB2GRAY);
-
-            byte[] dstData = new byte[dstMat.rows() * dstMat.cols() * (int)(dstMat.elemSize())];
-            dstMat.get(0, 0, dstData);
-            BufferedImage dstImg = new BufferedImage(dstMat.cols(),dstMat.rows(), BufferedImage.TYPE_BYTE_GRAY);
-            dstImg.getRaster().setDataElements(0, 0, dstMat.cols(), dstMat.rows(), dstData);
-
-            mat = new MatOfDouble();
-            dstMat.convertTo(mat, CV_64FC1);
-
-            img = dstImg;
+            long start = Defs.METRICS.startTime();
+            BufferedImage srcImg = ImageIO.read(new File(path));
+            Defs.METRICS.addTime(Metrics.LOAD, start);
+
+            start = Defs.METRICS.startTime();
+            raster = Utils.toGray(srcImg);
+            img = raster.toGrayImg();
+            Defs.METRICS.addTime(Metrics.CONVERT, start);
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
     }
 
     /**
-     * output an image to the specified path, according to the values in *** this.mat ***
+     * output an image to the specified path, according to the values in *** this.img ***
      * @param outputPath absolute path to output the image
      */
     public void writeImg(String outputPath) {
         try {
             String[] inputPathSplit = inputImgPath.split("\\.");
             String inputType = inputPathSplit[inputPathSplit.length-1];
-            File ouptut = new File(outputPath + "." + inputType);
-            ImageIO.write(img, inputType, ouptut);
+            Utils.writeImg(img, inputType, new File(outputPath + "." + inputType));
         } catch (Exception e) {
             System.out.println("Error: " + e.getMessage());
         }
     }
 
+    /**
+     * outputs the given raster to the specified path, through this.img, which is then set with the raster's values.
+     * this allows outputting several versions of the loaded image (e.g the hole's boundaries visualized) without
+     * loading it again
+     * @param outputPath absolute path to output the image
+     * @param r raster of the same size as the loaded image
+     */
+    public void writeImg(String outputPath, Raster r) {
+        long start = Defs.METRICS.startTime();
+        Utils.toBytes(r, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        Defs.METRICS.addTime(Metrics.CONVERT, start);
+        writeImg(outputPath);
+    }
+
+    /**
+     * sets this.img with the values of this.raster, in place, so that the next call to writeImg() will output
+     * the raster's values. if this.mat was requested, it's updated as well
+     */
+    public void updateImgFromRaster() {
+        long start = Defs.METRICS.startTime();
+        Utils.toBytes(raster, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        Defs.METRICS.addTime(Metrics.CONVERT, start);
+        if (mat != null) {
+            raster.copyTo(mat);
+        }
+    }
+
+    /**
+     * fills the given holes in this.raster, with a working raster of the given precision,
+     * see Utils.fillHoles(Raster r, List<Hole> holes, int alg, int z, double eps, int parallelism, int precision)
+     */
+    public void fillHoles(List<Hole> holes, int alg, int z, double eps, int parallelism, int precision) {
+        Utils.fillHoles(raster, holes, alg, z, eps, parallelism, precision);
+    }
+
     public void setImg(BufferedImage bi) {
         img = bi;
     }
@@ -80,6 +110,10 @@ public class HoleFiller {
         mat = sm;
     }
 
+    public void setRaster(Raster r) {
+        raster = r;
+    }
+
     public void setHole(Hole h) {
         hole = h;
     }
@@ -89,10 +123,20 @@ public class HoleFiller {
         return img;
     }
 
+    /**
+     * @return the image as a MatOfDouble, which is created from the raster on the first call
+     */
     public MatOfDouble getMat() {
+        if (mat == null) {
+            mat = raster.toMat();
+        }
         return mat;
     }
 
+    public Raster getRaster() {
+        return raster;
+    }
+
     public Hole getHole() {
         return hole;
     }
@@ -1,6 +1,11 @@
 import org.opencv.core.*;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * runner class for the task's routines
@@ -17,13 +22,56 @@ public class HoleFillingRunner {
             return;
         }
 
+        if (Defs.TEST_MODE || Defs.METRICS_PATH != null) {
+            Defs.METRICS = new RecordingMetrics();
+        }
+
         logMockHoleInfo();
 
-        runMockHoleFilling();
+        if (Defs.SERVER != null) {
+            runServer();
+        } else if (Defs.BATCH != null) {
+            runBatchHoleFilling();
+        } else if (Defs.TILED) {
+            runTiledMockHoleFilling();
+        } else if (Defs.COLOR) {
+            runColorMockHoleFilling();
+        } else {
+            runMockHoleFilling();
+        }
+
+        logMetrics();
 
         System.out.println("Done ...");
     }
 
+    /**
+     * adds the fill rate to the recorded metrics, and logs them: to Defs.METRICS_PATH if it's given,
+     * and to standard output in test mode
+     */
+    private static void logMetrics() {
+        if (!(Defs.METRICS instanceof RecordingMetrics)) {
+            return;
+        }
+        RecordingMetrics metrics = (RecordingMetrics) Defs.METRICS;
+        double fillSeconds = metrics.getSeconds(Metrics.FILL);
+        if (fillSeconds > 0) {
+            metrics.addCount(Metrics.FILLED_PIXELS_PER_SECOND,
+                    (long) (metrics.getCount(Metrics.MISSING_PIXELS) / fillSeconds));
+        }
+
+        if (Defs.TEST_MODE) {
+            System.out.format("metrics = %s%n", metrics.toJson());
+        }
+        if (Defs.METRICS_PATH != null) {
+            try {
+                metrics.dump(Paths.get(Defs.METRICS_PATH));
+            } catch (Exception e) {
+                System.out.println("Error: " + e.getMessage());
+            }
+        }
+    }
+
     private static void logMockHoleInfo() {
         System.out.format("mock hole start row = %d%n", Defs.MOCK_HOLE_START_ROW);
         System.out.format("mock hole height = %d%n", Defs.MOCK_HOLE_HEIGHT);
@@ -35,11 +83,10 @@ public class HoleFillingRunner {
      * runs the routine, which performs the task's requirements
      */
     private static void runMockHoleFilling() {
-        // load color rgb image, coverts in to grayscale, and saves it in outputImgs folder
+        // load color rgb image, coverts in to grayscale, and saves it in outputImgs folder.
+        // the image is loaded once, a copy of its grayscale raster is kept for the other outputs
         HoleFiller hf = new HoleFiller(Defs.INPUT_IMG_PATH);
-        Mat outputMat = new Mat();
-        hf.getMat().convertTo(outputMat, CvType.CV_8UC1);
-        hf.setImg(Utils.matToImg(outputMat));
+        Raster grayscale = hf.getRaster().copy();
 
         createOutputImgsDir();
 
@@ -52,7 +99,7 @@ public class HoleFillingRunner {
             int n = 0;
             for (int i = Defs.MOCK_HOLE_START_ROW; i < Defs.MOCK_HOLE_START_ROW + Defs.MOCK_HOLE_HEIGHT; i++) {
                 for (int j = Defs.MOCK_HOLE_START_COL; j < Defs.MOCK_HOLE_START_COL + Defs.MOCK_HOLE_WIDTH; j++) {
-                    sum += hf.getMat().get(i,j)[0];
+                    sum += hf.getRaster().get(i,j);
                     n++;
                 }
             }
@@ -63,15 +110,21 @@ public class HoleFillingRunner {
         // set the mock hole
         Index[] missingPixels = MockUtils.getMockSquareHole(new Index(Defs.MOCK_HOLE_START_ROW,
                         Defs.MOCK_HOLE_START_COL), Defs.MOCK_HOLE_HEIGHT, Defs.MOCK_HOLE_WIDTH);
-        MockUtils.setMockHole(hf.getMat(), missingPixels);
-        hf.setHole(Utils.findHole(hf.getMat()));
+        MockUtils.setMockHole(hf.getRaster(), missingPixels);
+        // the missing pixels are detected once: the single Hole of all of them (for the logs and the visualization)
+        // and the connected components (which are filled) are both derived from the same mask
+        long start = Defs.METRICS.startTime();
+        HoleMask mask = HoleMask.fromRaster(hf.getRaster(), Defs.PARALLELISM);
+        hf.setHole(mask.toHole());
+        List<Hole> holes = mask.findHoles(Defs.PARALLELISM);
+        Defs.METRICS.addTime(Metrics.HOLE_DETECTION, start);
 
         if (Defs.TEST_MODE) {
             // logs average of pixels in the locations which were set as the mock hole,
             // now we expect it to be -1.0
             double sum = 0.0;
             for (Index idx: hf.getHole().getMissingPixels()) {
-                sum += hf.getMat().get(idx.getRow(), idx.getCol())[0];
+                sum += hf.getRaster().get(idx.getRow(), idx.getCol());
             }
             int n = hf.getHole().getMissingPixels().length;
             double avr = sum / n;
@@ -80,50 +133,161 @@ public class HoleFillingRunner {
 
         // set visualization of out mock hole's boundaries, ad a black line, and output the
         // grayscale image with this visualization
-        HoleFiller hf2 = new HoleFiller(Defs.INPUT_IMG_PATH);
-        Utils.setVisualBoundaries(hf2.getMat(), hf.getHole().getBoundariesPixels(), 0.0);
+        Raster visualized = grayscale.copy();
+        Utils.setVisualBoundaries(visualized, hf.getHole().getBoundariesPixels(), 0.0);
+        hf.writeImg(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.BOUNDARY_VIS_IMG_NAME).toString(),
+                visualized);
 
-        hf2.getMat().convertTo(outputMat, CvType.CV_8UC1);
-        hf2.setImg(Utils.matToImg(outputMat));
-        hf2.writeImg(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.BOUNDARY_VIS_IMG_NAME).toString());
+        // fill the holes, every connected component of missing pixels is filled independently
+        start = Defs.METRICS.startTime();
+        hf.fillHoles(holes, Defs.ALG, Defs.Z, Defs.EPSILON, Defs.PARALLELISM, Defs.PRECISION);
+        Defs.METRICS.addTime(Metrics.FILL, start);
+        Defs.METRICS.addHoleCounts(holes, Defs.ALG);
+        Defs.METRICS.addCount(Metrics.IMAGES, 1);
 
-        // load the input image again, set our mock hole, and fill it according to the chosen algorithm
-        HoleFiller hf3 = new HoleFiller(Defs.INPUT_IMG_PATH);
-        MockUtils.setMockHole(hf3.getMat(), missingPixels);
-        hf3.setHole(Utils.findHole(hf3.getMat()));
+        if (Defs.TEST_MODE && Defs.PRECISION != Defs.PRECISION_DOUBLE) {
+            // logs the maximal difference between the missing pixels filled in the chosen precision, and the ones
+            // filled in double precision, and the number of output pixels (bytes) which are different
+            Raster reference = grayscale.copy();
+            MockUtils.setMockHole(reference, missingPixels);
+            Utils.fillHoles(reference, holes, Defs.ALG, Defs.Z, Defs.EPSILON, Defs.PARALLELISM);
+            byte[] referenceBytes = Utils.toBytes(reference);
+            byte[] bytes = Utils.toBytes(hf.getRaster());
+            int differentBytes = 0;
+            for (int i = 0; i < bytes.length; i++) {
+                differentBytes += bytes[i] != referenceBytes[i] ? 1 : 0;
+            }
+            System.out.format("max deviation from double precision = %f, different output pixels = %d%n",
+                    Utils.maxDeviation(reference, hf.getRaster(), hf.getHole().getMissingPixels()), differentBytes);
+        }
 
-        // fill the hole
-        if (Defs.ALG == 0) {
-            Utils.fillHole(hf3.getMat(), hf3.getHole(), Defs.Z, Defs.EPSILON);
-        } else if (Defs.ALG == 1) {
-            Index[] b = Utils.followHolePerimeter(hf3.getMat());
-            Utils.fillHoleCircular(hf3.getMat(), b);
+        if (Defs.TEST_MODE && (Defs.ALG == 2 || Defs.ALG == 3 || Defs.ALG == 5 || Defs.ALG == 7)) {
+            // logs the maximal difference between the missing pixels filled by the chosen algorithm,
+            // and the ones filled by the exact algorithm
+            MockUtils.setMockHole(grayscale, missingPixels);
+            Utils.fillHoles(grayscale, holes, 0, Defs.Z, Defs.EPSILON, Defs.PARALLELISM);
+            System.out.format("max deviation from the exact algorithm = %f%n",
+                    Utils.maxDeviation(grayscale, hf.getRaster(), hf.getHole().getMissingPixels()));
         }
 
         if (Defs.TEST_MODE) {
             // logs the average of the missing pixels, after they where filled, and the average of the pixels in the
             // boundaries - we expect them to be reasonably close
             double sum = 0.0;
-            for (Index idx: hf3.getHole().getMissingPixels()) {
-                sum += hf3.getMat().get(idx.getRow(), idx.getCol())[0];
+            for (Index idx: hf.getHole().getMissingPixels()) {
+                sum += hf.getRaster().get(idx.getRow(), idx.getCol());
             }
-            int n = hf3.getHole().getMissingPixels().length;
+            int n = hf.getHole().getMissingPixels().length;
             double avr = sum / n;
             System.out.format("after filling hole, average of missing pixels = %f%n", avr);
 
             sum = 0.0;
-            for (Index idx: hf3.getHole().getBoundariesPixels()) {
-                sum += hf3.getMat().get(idx.getRow(), idx.getCol())[0];
+            for (Index idx: hf.getHole().getBoundariesPixels()) {
+                sum += hf.getRaster().get(idx.getRow(), idx.getCol());
             }
-            n = hf3.getHole().getBoundariesPixels().length;
+            n = hf.getHole().getBoundariesPixels().length;
             avr = sum / n;
             System.out.format("average of boundaries pixels = %f%n", avr);
         }
 
         // output the final image after missing pixels where filled
-        hf3.getMat().convertTo(outputMat, CvType.CV_8UC1);
-        hf3.setImg(Utils.matToImg(outputMat));
-        hf3.writeImg(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.FINAL_FILLED_IMG_NAME).toString());
+        hf.updateImgFromRaster();
+        hf.writeImg(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.FINAL_FILLED_IMG_NAME).toString());
+    }
+
+    /**
+     * runs the same routine as runMockHoleFilling(), for images which are too large to be held in memory:
+     * the grayscale image is held in a memory mapped raw file under outputImgs, see TiledHoleFiller.
+     * only the final filled image is written
+     */
+    private static void runTiledMockHoleFilling() {
+        createOutputImgsDir();
+        Path rawPath = Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.TILED_RAW_FILE_NAME);
+        try (MappedRaster m = MappedRaster.importGrayScale(Defs.INPUT_IMG_PATH, rawPath, Defs.TILE_STRIPE_ROWS)) {
+            Index[] missingPixels = MockUtils.getMockSquareHole(new Index(Defs.MOCK_HOLE_START_ROW,
+                    Defs.MOCK_HOLE_START_COL), Defs.MOCK_HOLE_HEIGHT, Defs.MOCK_HOLE_WIDTH);
+            MockUtils.setMockHole(m, missingPixels);
+
+            // hole detection is done tile by tile, as part of the fill
+            long start = Defs.METRICS.startTime();
+            TiledHoleFiller.fillHoles(m, Defs.ALG, Defs.Z, Defs.EPSILON, Defs.PARALLELISM);
+            Defs.METRICS.addTime(Metrics.FILL, start);
+
+            // the image is encoded row by row, as png, whatever the type of the input is
+            start = Defs.METRICS.startTime();
+            m.writeGrayPng(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR, Defs.FINAL_FILLED_IMG_NAME + ".png"));
+            Defs.METRICS.addTime(Metrics.ENCODE, start);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * runs the same routine as runMockHoleFilling(), on all the channels of the color image, see ColorRaster.
+     * only the final filled image is written
+     */
+    private static void runColorMockHoleFilling() {
+        createOutputImgsDir();
+        try {
+            long start = Defs.METRICS.startTime();
+            BufferedImage srcImg = ImageIO.read(new File(Defs.INPUT_IMG_PATH));
+            Defs.METRICS.addTime(Metrics.LOAD, start);
+
+            start = Defs.METRICS.startTime();
+            ColorRaster r = ColorRaster.fromImg(srcImg);
+            Defs.METRICS.addTime(Metrics.CONVERT, start);
+
+            Index[] missingPixels = MockUtils.getMockSquareHole(new Index(Defs.MOCK_HOLE_START_ROW,
+                    Defs.MOCK_HOLE_START_COL), Defs.MOCK_HOLE_HEIGHT, Defs.MOCK_HOLE_WIDTH);
+            MockUtils.setMockHole(r, missingPixels);
+
+            start = Defs.METRICS.startTime();
+            List<Hole> holes = Utils.findHoles(r, Defs.PARALLELISM);
+            Defs.METRICS.addTime(Metrics.HOLE_DETECTION, start);
+
+            start = Defs.METRICS.startTime();
+            Utils.fillHoles(r, holes, Defs.ALG, Defs.Z, Defs.EPSILON, Defs.PARALLELISM);
+            Defs.METRICS.addTime(Metrics.FILL, start);
+            Defs.METRICS.addHoleCounts(holes, Defs.ALG);
+
+            String[] inputPathSplit = Defs.INPUT_IMG_PATH.split("\\.");
+            String inputType = inputPathSplit[inputPathSplit.length - 1];
+            File output = new File(Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR,
+                    Defs.FINAL_FILLED_IMG_NAME).toString() + "." + inputType);
+            start = Defs.METRICS.startTime();
+            BufferedImage img = r.toImg();
+            Defs.METRICS.addTime(Metrics.CONVERT, start);
+            Utils.writeImg(img, inputType, output);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * fills all the images which are given in Defs.BATCH, see BatchRunner. the filled images are written to
+     * the output directory
+     */
+    private static void runBatchHoleFilling() {
+        createOutputImgsDir();
+        try {
+            long start = System.nanoTime();
+            int n = BatchRunner.run(Paths.get(Defs.BATCH), Paths.get(Defs.PROJECT_PATH, Defs.OUTPUT_IMGS_DIR),
+                    Defs.ALG, Defs.Z, Defs.EPSILON, Defs.PARALLELISM, Defs.BATCH_IO_THREADS, Defs.BATCH_QUEUE_DEPTH);
+            System.out.format("filled %d images in %.2f seconds%n", n, (System.nanoTime() - start) / 1e9);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
+    }
+
+    /**
+     * serves fill jobs on the socket of Defs.SERVER, until the process is killed
+     */
+    private static void runServer() {
+        try {
+            FillServer.run(Paths.get(Defs.SERVER), Defs.SERVER_WORKERS);
+        } catch (Exception e) {
+            System.out.println("Error: " + e.getMessage());
+        }
     }
 
     /**
@@ -135,7 +299,7 @@ public class HoleFillingRunner {
                 Paths.get(Defs.PROJECT_PATH, Defs.INPUT_IMAGE_NAME_DEF).toString() : args[0];
 
         Defs.ALG = args[1].equals(Defs.CMD_LINE_ARG_DEF) ? Defs.ALG : Integer.parseInt(args[1]);
-        Defs.Z = args[2].equals(Defs.CMD_LINE_ARG_DEF) ? (Defs.ALG == 0 ? Defs.Z_DEF : Defs.Z_CIRC_DEF)
+        Defs.Z = args[2].equals(Defs.CMD_LINE_ARG_DEF) ? (Defs.ALG == 1 || Defs.ALG == 4 ? Defs.Z_CIRC_DEF : Defs.Z_DEF)
                 : Integer.parseInt(args[2]);
         Defs.EPSILON = args[3].equals(Defs.CMD_LINE_ARG_DEF) ? Defs.EPSILON : Double.parseDouble(args[3]);
         Defs.TEST_MODE = args[4].equals(Defs.CMD_LINE_ARG_DEF) ? Defs.TEST_MODE : Boolean.parseBoolean(args[4]);
@@ -152,6 +316,32 @@ public class HoleFillingRunner {
             Defs.MOCK_HOLE_START_COL = intData[2];
             Defs.MOCK_HOLE_WIDTH = intData[3];
         }
+
+        Defs.PARALLELISM = isArgGiven(args, 6) ? Integer.parseInt(args[6]) : Defs.PARALLELISM;
+        Defs.SIMD = isArgGiven(args, 7) ? Boolean.parseBoolean(args[7]) : Defs.SIMD;
+        Defs.THETA = isArgGiven(args, 8) ? Double.parseDouble(args[8]) : Defs.THETA;
+        Defs.TILED = isArgGiven(args, 9) ? Boolean.parseBoolean(args[9]) : Defs.TILED;
+        Defs.COLOR = isArgGiven(args, 10) ? Boolean.parseBoolean(args[10]) : Defs.COLOR;
+        Defs.BATCH = isArgGiven(args, 11) ? args[11] : Defs.BATCH;
+        Defs.PRECISION = isArgGiven(args, 12) ? Integer.parseInt(args[12]) : Defs.PRECISION;
+        Defs.METRICS_PATH = isArgGiven(args, 13) ? args[13] : Defs.METRICS_PATH;
+        Defs.CUTOFF_RADIUS = isArgGiven(args, 14) ? Double.parseDouble(args[14]) : Defs.CUTOFF_RADIUS;
+        Defs.K_NEAREST = isArgGiven(args, 15) ? Integer.parseInt(args[15]) : Defs.K_NEAREST;
+        Defs.LAPLACE_TOLERANCE = isArgGiven(args, 16) ? Double.parseDouble(args[16]) : Defs.LAPLACE_TOLERANCE;
+        Defs.LAPLACE_MAX_CYCLES = isArgGiven(args, 17) ? Integer.parseInt(args[17]) : Defs.LAPLACE_MAX_CYCLES;
+        Defs.PYRAMID_BAND = isArgGiven(args, 18) ? Integer.parseInt(args[18]) : Defs.PYRAMID_BAND;
+        Defs.FILL_PLANS = isArgGiven(args, 19) ? Boolean.parseBoolean(args[19]) : Defs.FILL_PLANS;
+        Defs.FILL_PLAN_DIR = isArgGiven(args, 20) ? args[20] : Defs.FILL_PLAN_DIR;
+        Defs.SERVER = isArgGiven(args, 21) ? args[21] : Defs.SERVER;
+    }
+
+    /**
+     * @param args String[] normally args array as it's given from main method
+     * @param i position of the argument
+     * @return true if the argument in position i was given in command line
+     */
+    private static boolean isArgGiven(String[] args, int i) {
+        return args.length > i && !args[i].equals(Defs.CMD_LINE_ARG_DEF);
     }
 
     /**
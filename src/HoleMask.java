@@ -0,0 +1,393 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * a bitmask of the missing pixels of an image, one bit per pixel, row by row.
+ * every row starts at a new long word, so row i is held in words[i * wordsPerRow], ..., words[(i + 1) * wordsPerRow - 1]
+ * and pixel (i, j) is bit (j % 64) of words[i * wordsPerRow + j / 64]
+ */
+public class HoleMask {
+    private final long[] words;
+    private final int width;
+    private final int height;
+    private final int wordsPerRow;
+
+    public HoleMask(int h, int w) {
+        height = h;
+        width = w;
+        wordsPerRow = (w + 63) >>> 6;
+        words = new long[h * wordsPerRow];
+    }
+
+    /**
+     * creates the mask of the missing pixels (pixels which hold Defs.HOLE_VALUE) of the given raster
+     * @param m raster to be inspected
+     * @return HoleMask
+     */
+    public static HoleMask fromRaster(Raster m) {
+        return fromRaster(m, 1);
+    }
+
+    /**
+     * creates the mask of the missing pixels (pixels which hold Defs.HOLE_VALUE) of the given raster,
+     * in a single pass over the raster's data, split to stripes of rows between the threads
+     * @param m raster to be inspected
+     * @param parallelism number of threads to use
+     * @return HoleMask
+     */
+    public static HoleMask fromRaster(Raster m, int parallelism) {
+        HoleMask mask = new HoleMask(m.getHeight(), m.getWidth());
+        int stripes = Math.max(1, Math.min(m.getHeight(), parallelism * 4));
+        Utils.parallelFor(stripes, parallelism, s -> {
+            int stripeStart = (int) ((long) m.getHeight() * s / stripes);
+            int stripeEnd = (int) ((long) m.getHeight() * (s + 1) / stripes);
+            mask.setRows(m, 0, stripeStart, stripeEnd - stripeStart);
+        });
+        return mask;
+    }
+
+    /**
+     * creates the mask of the missing pixels of a memory mapped raster, reading it in stripes of rows,
+     * so only a single stripe is held in the heap at a time
+     * @param m raster to be inspected
+     * @param stripeRows number of rows to read at a time
+     * @return HoleMask
+     */
+    public static HoleMask fromMappedRaster(MappedRaster m, int stripeRows) {
+        HoleMask mask = new HoleMask(m.getHeight(), m.getWidth());
+        for (int top = 0; top < m.getHeight(); top += stripeRows) {
+            int rows = Math.min(stripeRows, m.getHeight() - top);
+            mask.setRows(m.readTile(top, 0, rows, m.getWidth()), top, 0, rows);
+        }
+        return mask;
+    }
+
+    /**
+     * sets the mask's rows firstRow, ..., firstRow + rows - 1 from rows from, ..., from + rows - 1 of r
+     * (r must be as wide as the mask)
+     */
+    private void setRows(Raster r, int firstRow, int from, int rows) {
+        double[] data = r.getData();
+        for (int i = 0; i < rows; i++) {
+            int rowStart = (from + i) * r.getStride();
+            int wordsStart = (firstRow + from + i) * wordsPerRow;
+            for (int w = 0; w < wordsPerRow; w++) {
+                // build every word in a local variable, and write it once
+                long word = 0;
+                int colsEnd = Math.min(64, width - w * 64);
+                for (int b = 0; b < colsEnd; b++) {
+                    if (data[rowStart + w * 64 + b] == Defs.HOLE_VALUE) {
+                        word |= 1L << b;
+                    }
+                }
+                words[wordsStart + w] = word;
+            }
+        }
+    }
+
+    public boolean get(int row, int col) {
+        return (words[row * wordsPerRow + (col >>> 6)] & (1L << col)) != 0;
+    }
+
+    public void set(int row, int col) {
+        words[row * wordsPerRow + (col >>> 6)] |= 1L << col;
+    }
+
+    /**
+     * separates the missing pixels to connected components (8-connectivity), and returns a Hole for every one of
+     * them, with its own missing pixels and boundaries pixels (4-connectivity, as in Utils.findHole()).
+     *
+     * labeling is done in a single scan, over runs of consecutive missing pixels in every row rather than over
+     * pixels: every run is unioned with the runs of the previous row which touch it, using union-find.
+     * the boundaries of every hole are then derived with word level bit operations, only inside its bounding box
+     * @return list of the holes, ordered by their first missing pixel (in rows order)
+     */
+    public List<Hole> findHoles() {
+        return findHoles(1);
+    }
+
+    /**
+     * see HoleMask.findHoles(), the holes are created in parallel
+     * @param parallelism number of threads to use
+     * @return list of the holes, ordered by their first missing pixel (in rows order)
+     */
+    public List<Hole> findHoles(int parallelism) {
+        // runs of missing pixels, in scan order: row, first col and last col (inclusive)
+        int[] runRow = new int[64];
+        int[] runStart = new int[64];
+        int[] runEnd = new int[64];
+        int[] parent = new int[64];
+        int runs = 0;
+
+        int prevRowFirst = 0, prevRowEnd = 0; // runs of the previous row are prevRowFirst, ..., prevRowEnd - 1
+        for (int i = 0; i < height; i++) {
+            int rowFirst = runs;
+            int prev = prevRowFirst;
+            int j = nextSet(i, 0);
+            while (j < width) {
+                int end = nextClear(i, j) - 1;
+                if (runs == runRow.length) {
+                    int capacity = runs * 2;
+                    runRow = Arrays.copyOf(runRow, capacity);
+                    runStart = Arrays.copyOf(runStart, capacity);
+                    runEnd = Arrays.copyOf(runEnd, capacity);
+                    parent = Arrays.copyOf(parent, capacity);
+                }
+                runRow[runs] = i;
+                runStart[runs] = j;
+                runEnd[runs] = end;
+                parent[runs] = runs;
+
+                // union with the runs of the previous row which touch this run, including diagonally.
+                // runs of both rows are ordered, so the runs which end before this one can be skipped for good
+                while (prev < prevRowEnd && runEnd[prev] < j - 1) {
+                    prev++;
+                }
+                for (int p = prev; p < prevRowEnd && runStart[p] <= end + 1; p++) {
+                    union(parent, p, runs);
+                }
+                runs++;
+                j = (end + 1 < width) ? nextSet(i, end + 1) : width;
+            }
+            prevRowFirst = rowFirst;
+            prevRowEnd = runs;
+        }
+
+        // group the runs by their root, roots are numbered by the order of their first run
+        int[] holeOfRoot = new int[runs];
+        Arrays.fill(holeOfRoot, -1);
+        List<List<Integer>> holesRuns = new ArrayList<>();
+        for (int r = 0; r < runs; r++) {
+            int root = find(parent, r);
+            if (holeOfRoot[root] == -1) {
+                holeOfRoot[root] = holesRuns.size();
+                holesRuns.add(new ArrayList<>());
+            }
+            holesRuns.get(holeOfRoot[root]).add(r);
+        }
+
+        final int[] rowOfRun = runRow;
+        final int[] startOfRun = runStart;
+        final int[] endOfRun = runEnd;
+        Hole[] holes = new Hole[holesRuns.size()];
+        Utils.parallelFor(holes.length, parallelism, h ->
+                holes[h] = toHole(holesRuns.get(h), rowOfRun, startOfRun, endOfRun));
+        return Arrays.asList(holes);
+    }
+
+    /**
+     * returns a single Hole of all the missing pixels in the mask, as in Utils.findHole()
+     * @return Hole
+     */
+    public Hole toHole() {
+        int missingCount = 0;
+        int minRow = height, maxRow = -1, minCol = width, maxCol = -1;
+        for (int i = 0; i < height; i++) {
+            int j = nextSet(i, 0);
+            if (j < width) {
+                minRow = Math.min(minRow, i);
+                maxRow = i;
+                minCol = Math.min(minCol, j);
+            }
+            while (j < width) {
+                int end = nextClear(i, j);
+                missingCount += end - j;
+                maxCol = Math.max(maxCol, end - 1);
+                j = (end < width) ? nextSet(i, end) : width;
+            }
+        }
+        if (missingCount == 0) {
+            return new Hole(new long[0], new long[0]);
+        }
+
+        long[] missing = new long[missingCount];
+        int k = 0;
+        for (int i = minRow; i <= maxRow; i++) {
+            int j = nextSet(i, 0);
+            while (j < width) {
+                int end = nextClear(i, j);
+                for (int col = j; col < end; col++) {
+                    missing[k++] = Index.pack(i, col);
+                }
+                j = (end < width) ? nextSet(i, end) : width;
+            }
+        }
+
+        // the component is the whole mask, restricted to the bounding box and the pixels around it
+        int firstRow = Math.max(0, minRow - 1);
+        int lastRow = Math.min(height - 1, maxRow + 1);
+        int firstWord = Math.max(0, minCol - 1) >>> 6;
+        int lastWord = Math.min(width - 1, maxCol + 1) >>> 6;
+        int localWords = lastWord - firstWord + 1;
+        long[] local = new long[(lastRow - firstRow + 1) * localWords];
+        for (int i = firstRow; i <= lastRow; i++) {
+            System.arraycopy(words, i * wordsPerRow + firstWord, local, (i - firstRow) * localWords, localWords);
+        }
+        return new Hole(missing, boundaryOf(local, firstRow, lastRow, firstWord, localWords));
+    }
+
+    /**
+     * creates a Hole of the given runs, which are a connected component
+     */
+    private Hole toHole(List<Integer> holeRuns, int[] runRow, int[] runStart, int[] runEnd) {
+        int missingCount = 0;
+        int minCol = width, maxCol = -1;
+        for (int r: holeRuns) {
+            missingCount += runEnd[r] - runStart[r] + 1;
+            minCol = Math.min(minCol, runStart[r]);
+            maxCol = Math.max(maxCol, runEnd[r]);
+        }
+        int minRow = runRow[holeRuns.get(0)];
+        int maxRow = runRow[holeRuns.get(holeRuns.size() - 1)];
+
+        // a mask of this component only, over the bounding box and the pixels around it,
+        // its words are aligned to the words of the whole mask
+        int firstRow = Math.max(0, minRow - 1);
+        int lastRow = Math.min(height - 1, maxRow + 1);
+        int firstWord = Math.max(0, minCol - 1) >>> 6;
+        int lastWord = Math.min(width - 1, maxCol + 1) >>> 6;
+        int localWords = lastWord - firstWord + 1;
+        long[] local = new long[(lastRow - firstRow + 1) * localWords];
+
+        long[] missing = new long[missingCount];
+        int k = 0;
+        for (int r: holeRuns) {
+            int row = runRow[r];
+            for (int col = runStart[r]; col <= runEnd[r]; col++) {
+                missing[k++] = Index.pack(row, col);
+            }
+            setRange(local, (row - firstRow) * localWords, runStart[r] - firstWord * 64, runEnd[r] - firstWord * 64);
+        }
+
+        return new Hole(missing, boundaryOf(local, firstRow, lastRow, firstWord, localWords));
+    }
+
+    /**
+     * sets the bits from (inclusive) to to (inclusive) of the bits which start at words[off]
+     */
+    private static void setRange(long[] words, int off, int from, int to) {
+        int fromWord = from >>> 6;
+        int toWord = to >>> 6;
+        for (int w = fromWord; w <= toWord; w++) {
+            long bits = -1L;
+            if (w == fromWord) {
+                bits &= -1L << from;
+            }
+            if (w == toWord) {
+                bits &= -1L >>> (63 - (to & 63));
+            }
+            words[off + w] |= bits;
+        }
+    }
+
+    /**
+     * derives the boundaries pixels (4-connectivity) of a component, with word level bit operations:
+     * boundaries = (component | component shifted by one pixel in each of the 4 directions) & ~(all missing pixels)
+     * @param local the component's mask, rows firstRow, ..., lastRow of it, each row holds localWords words,
+     *              which correspond to words firstWord, ..., firstWord + localWords - 1 of the whole mask's rows
+     * @return packed locations of the boundaries pixels, in rows order
+     */
+    private long[] boundaryOf(long[] local, int firstRow, int lastRow, int firstWord, int localWords) {
+        long[] boundary = new long[16];
+        int n = 0;
+        for (int i = firstRow; i <= lastRow; i++) {
+            int row = (i - firstRow) * localWords;
+            for (int w = 0; w < localWords; w++) {
+                long x = local[row + w];
+                long left = (w > 0) ? local[row + w - 1] : 0;
+                long right = (w < localWords - 1) ? local[row + w + 1] : 0;
+                long dilated = x | (x << 1) | (left >>> 63) | (x >>> 1) | (right << 63);
+                if (i > firstRow) {
+                    dilated |= local[row - localWords + w];
+                }
+                if (i < lastRow) {
+                    dilated |= local[row + localWords + w];
+                }
+
+                int globalWord = firstWord + w;
+                long b = dilated & ~words[i * wordsPerRow + globalWord];
+                if (globalWord == wordsPerRow - 1 && (width & 63) != 0) {
+                    b &= -1L >>> (64 - (width & 63)); // cols beyond the image's width
+                }
+                while (b != 0) {
+                    if (n == boundary.length) {
+                        boundary = Arrays.copyOf(boundary, n * 2);
+                    }
+                    boundary[n++] = Index.pack(i, globalWord * 64 + Long.numberOfTrailingZeros(b));
+                    b &= b - 1;
+                }
+            }
+        }
+        return Arrays.copyOf(boundary, n);
+    }
+
+    /**
+     * @return the first col, starting from col, in the given row which is missing, or width if there's none
+     */
+    public int nextSet(int row, int col) {
+        int w = row * wordsPerRow + (col >>> 6);
+        int rowEnd = (row + 1) * wordsPerRow;
+        long word = words[w] & (-1L << col);
+        while (word == 0) {
+            if (++w == rowEnd) {
+                return width;
+            }
+            word = words[w];
+        }
+        return Math.min(width, (w - row * wordsPerRow) * 64 + Long.numberOfTrailingZeros(word));
+    }
+
+    /**
+     * @return the first col, starting from col, in the given row which isn't missing, or width if there's none
+     */
+    public int nextClear(int row, int col) {
+        int w = row * wordsPerRow + (col >>> 6);
+        int rowEnd = (row + 1) * wordsPerRow;
+        long word = ~words[w] & (-1L << col);
+        while (word == 0) {
+            if (++w == rowEnd) {
+                return width;
+            }
+            word = ~words[w];
+        }
+        return Math.min(width, (w - row * wordsPerRow) * 64 + Long.numberOfTrailingZeros(word));
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * unions the sets of a and b, the root with the smaller index (the earlier run) becomes the root
+     */
+    private static void union(int[] parent, int a, int b) {
+        int ra = find(parent, a);
+        int rb = find(parent, b);
+        if (ra < rb) {
+            parent[rb] = ra;
+        } else if (rb < ra) {
+            parent[ra] = rb;
+        }
+    }
+
+    public long[] getWords() {
+        return words;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getWordsPerRow() {
+        return wordsPerRow;
+    }
+}
@@ -17,7 +17,59 @@ public class Index {
 
     @Override
     public int hashCode() {
-        return row - col;
+        return 31 * row + col;
+    }
+
+    /**
+     * packs a pixel location to a single long, row in the high 32 bits and col in the low 32 bits.
+     * packed locations are used instead of Index objects where there are many pixels, see Hole and PixelSet
+     * @param r row
+     * @param c col
+     * @return packed location
+     */
+    public static long pack(int r, int c) {
+        return ((long) r << 32) | (c & 0xffffffffL);
+    }
+
+    /**
+     * @param p packed location, see Index.pack()
+     * @return row of the location
+     */
+    public static int rowOf(long p) {
+        return (int) (p >> 32);
+    }
+
+    /**
+     * @param p packed location, see Index.pack()
+     * @return col of the location
+     */
+    public static int colOf(long p) {
+        return (int) p;
+    }
+
+    /**
+     * @param idxs locations
+     * @return the packed locations, see Index.pack()
+     */
+    public static long[] pack(Index[] idxs) {
+        long[] packed = new long[idxs.length];
+        for (int i = 0; i < idxs.length; i++) {
+            packed[i] = pack(idxs[i].getRow(), idxs[i].getCol());
+        }
+        return packed;
+    }
+
+    /**
+     * @param packed packed locations, see Index.pack()
+     * @param n number of locations to unpack, from the start of packed
+     * @return Index objects of the locations
+     */
+    public static Index[] unpack(long[] packed, int n) {
+        Index[] idxs = new Index[n];
+        for (int i = 0; i < n; i++) {
+            idxs[i] = new Index(rowOf(packed[i]), colOf(packed[i]));
+        }
+        return idxs;
     }
 
     @Override
@@ -0,0 +1,297 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * fills a hole with the harmonic function which equals the image on the boundaries, i.e solves the Laplace equation
+ * over the missing pixels (every missing pixel is the average of its 4 neighbors), with the boundaries as Dirichlet
+ * data. at the image's border, where a missing pixel has less than 4 neighbors, it's the average of the ones it has.
+ *
+ * the equation is solved over the hole's bounding box with V-cycles of multigrid: every level halves the box, is
+ * smoothed with red-black SOR, and the error which is left on it is corrected from the next (coarser) level.
+ * a V-cycle costs O(n) where n is the number of missing pixels, and the number of V-cycles it takes to reach the
+ * tolerance hardly depends on the size of the hole. a sweep of a single color updates pixels which don't read each
+ * other, so its rows are updated in parallel.
+ *
+ * the levels are cell centered: a cell of a coarse level covers 2x2 cells of the finer level. it's fixed (its error
+ * is 0) if one of them is fixed, otherwise unknown if one of them is unknown, and absent (outside the image) if all of
+ * them are. so the unknowns of a coarse level lie inside the ones of the finer level, and its corrections don't
+ * overshoot. the residuals are restricted by summing the 4 cells, and the corrections are interpolated bilinearly
+ */
+public class LaplaceFill {
+
+    // types of the cells of a level
+    private static final byte ABSENT = 0;
+    private static final byte FIXED = 1;
+    private static final byte UNKNOWN = 2;
+
+    // over relaxation of the smoother, ~1.15 smooths the high frequencies of the error best for a red-black order
+    private static final double OMEGA = 1.15;
+
+    private static final int PRE_SMOOTHING = 2;
+    private static final int POST_SMOOTHING = 2;
+
+    // the coarsening stops at a level with this number of unknown cells or less, which is solved by SOR alone
+    private static final int COARSEST_UNKNOWNS = 64;
+
+    // the smallest number of cells which is given to a single thread in a sweep
+    private static final int MIN_CELLS_PER_TASK = 4096;
+
+    /**
+     * a level of the multigrid. the cells are held with a margin of a single absent cell, so every cell has 4
+     * neighbors in the arrays
+     */
+    private static class Level {
+        private final int height;
+        private final int width;
+        private final int stride;
+        private final byte[] type;
+        // number of neighbors which aren't absent, for unknown cells
+        private final byte[] neighbors;
+        private final double[] u;
+        private final double[] f;
+        private int unknowns = 0;
+        private boolean hasFixed = false;
+
+        Level(int h, int w) {
+            height = h;
+            width = w;
+            stride = w + 2;
+            type = new byte[(h + 2) * stride];
+            neighbors = new byte[type.length];
+            u = new double[type.length];
+            f = new double[type.length];
+        }
+
+        int index(int row, int col) {
+            return (row + 1) * stride + col + 1;
+        }
+
+        /**
+         * counts the unknown cells and their neighbors, after the types were set
+         */
+        void countNeighbors() {
+            for (int i = 0; i < type.length; i++) {
+                if (type[i] == UNKNOWN) {
+                    unknowns++;
+                    neighbors[i] = (byte) ((type[i - 1] != ABSENT ? 1 : 0) + (type[i + 1] != ABSENT ? 1 : 0) +
+                            (type[i - stride] != ABSENT ? 1 : 0) + (type[i + stride] != ABSENT ? 1 : 0));
+                } else if (type[i] == FIXED) {
+                    hasFixed = true;
+                }
+            }
+        }
+
+        /**
+         * @return the next coarser level, with the types of its cells set and all its values 0
+         */
+        Level coarsen() {
+            Level c = new Level((height + 1) / 2, (width + 1) / 2);
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    int k = c.index(i / 2, j / 2);
+                    byte t = type[index(i, j)];
+                    if (t == FIXED || (t == UNKNOWN && c.type[k] == ABSENT)) {
+                        c.type[k] = t;
+                    }
+                }
+            }
+            c.countNeighbors();
+            return c;
+        }
+    }
+
+    /**
+     * fills the hole in the given raster, see class description
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param tolerance the V-cycles stop when no missing pixel differs from the average of its neighbors by more
+     *                  than this (in gray levels)
+     * @param maxCycles the maximal number of V-cycles
+     * @param parallelism number of threads to run the sweeps with
+     * @return number of V-cycles which ran
+     */
+    public static int fillHole(Raster r, Hole hole, double tolerance, int maxCycles, int parallelism) {
+        long[] missing = hole.getPackedMissingPixels();
+        long[] boundaries = hole.getPackedBoundariesPixels();
+        if (missing.length == 0 || boundaries.length == 0) {
+            return 0;
+        }
+
+        // the bounding box of the hole contains its boundaries, so it contains all the neighbors of its pixels,
+        // except for the ones outside the image, which are the absent margin of the level
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        Level fine = new Level(hole.getMaxRow() - top + 1, hole.getMaxCol() - left + 1);
+        Arrays.fill(fine.type, FIXED);
+        for (int i = 0; i < fine.type.length; i++) {
+            int row = i / fine.stride;
+            int col = i % fine.stride;
+            if (row == 0 || row == fine.height + 1 || col == 0 || col == fine.width + 1) {
+                fine.type[i] = ABSENT;
+            }
+        }
+        for (long p: missing) {
+            fine.type[fine.index(Index.rowOf(p) - top, Index.colOf(p) - left)] = UNKNOWN;
+        }
+        fine.countNeighbors();
+
+        // the missing pixels start from the average of the boundaries
+        double avrg = Utils.matAvrg(r, boundaries, boundaries.length);
+        for (long p: boundaries) {
+            fine.u[fine.index(Index.rowOf(p) - top, Index.colOf(p) - left)] = r.get(Index.rowOf(p), Index.colOf(p));
+        }
+        for (long p: missing) {
+            fine.u[fine.index(Index.rowOf(p) - top, Index.colOf(p) - left)] = avrg;
+        }
+
+        List<Level> levels = new ArrayList<>();
+        levels.add(fine);
+        while (levels.get(levels.size() - 1).unknowns > COARSEST_UNKNOWNS) {
+            Level c = levels.get(levels.size() - 1).coarsen();
+            // a level without fixed cells has no single solution, the previous one is solved by SOR alone
+            if (!c.hasFixed) {
+                break;
+            }
+            levels.add(c);
+        }
+
+        int cycles = 0;
+        while (cycles < maxCycles) {
+            vCycle(levels, 0, tolerance, parallelism);
+            cycles++;
+            if (maxResidual(fine, parallelism) <= tolerance) {
+                break;
+            }
+        }
+
+        for (long p: missing) {
+            r.set(Index.rowOf(p), Index.colOf(p), fine.u[fine.index(Index.rowOf(p) - top, Index.colOf(p) - left)]);
+        }
+        return cycles;
+    }
+
+    private static void vCycle(List<Level> levels, int k, double tolerance, int parallelism) {
+        Level l = levels.get(k);
+        if (k == levels.size() - 1) {
+            // the coarsest level is small (or all its unknowns are near fixed cells), so SOR converges on it fast
+            int maxSweeps = 2 * (l.height + l.width) + 20;
+            for (int i = 0; i < maxSweeps; i++) {
+                if (smooth(l, parallelism) <= tolerance / 10) {
+                    break;
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < PRE_SMOOTHING; i++) {
+            smooth(l, parallelism);
+        }
+
+        // the coarse level solves for the error, from the residuals, with 0 error on its fixed cells
+        Level c = levels.get(k + 1);
+        Arrays.fill(c.u, 0);
+        Arrays.fill(c.f, 0);
+        for (int i = 0; i < l.height; i++) {
+            for (int j = 0; j < l.width; j++) {
+                int idx = l.index(i, j);
+                if (l.type[idx] == UNKNOWN) {
+                    c.f[c.index(i / 2, j / 2)] += residual(l, idx);
+                }
+            }
+        }
+        vCycle(levels, k + 1, tolerance, parallelism);
+        interpolate(c, l);
+
+        for (int i = 0; i < POST_SMOOTHING; i++) {
+            smooth(l, parallelism);
+        }
+    }
+
+    /**
+     * a single red-black SOR sweep
+     * @return the maximal change of a cell
+     */
+    private static double smooth(Level l, int parallelism) {
+        int rowsPerTask = Math.max(1, MIN_CELLS_PER_TASK / l.width);
+        int tasks = (l.height + rowsPerTask - 1) / rowsPerTask;
+        if ((long) l.height * l.width < MIN_CELLS_PER_TASK) {
+            parallelism = 1;
+        }
+        double[] changes = new double[tasks];
+        for (int color = 0; color < 2; color++) {
+            final int c = color;
+            Utils.parallelFor(tasks, parallelism, t -> {
+                double change = 0;
+                for (int i = t * rowsPerTask; i < Math.min(l.height, (t + 1) * rowsPerTask); i++) {
+                    for (int j = (i + c) % 2; j < l.width; j += 2) {
+                        int idx = l.index(i, j);
+                        if (l.type[idx] != UNKNOWN) {
+                            continue;
+                        }
+                        // absent cells are always 0, so they add nothing to the sum
+                        double avrg = (l.f[idx] + l.u[idx - 1] + l.u[idx + 1] + l.u[idx - l.stride] +
+                                l.u[idx + l.stride]) / l.neighbors[idx];
+                        double d = OMEGA * (avrg - l.u[idx]);
+                        l.u[idx] += d;
+                        change = Math.max(change, Math.abs(d));
+                    }
+                }
+                changes[t] = Math.max(changes[t], change);
+            });
+        }
+        double change = 0;
+        for (double d: changes) {
+            change = Math.max(change, d);
+        }
+        return change;
+    }
+
+    private static double residual(Level l, int idx) {
+        return l.f[idx] + l.u[idx - 1] + l.u[idx + 1] + l.u[idx - l.stride] + l.u[idx + l.stride] -
+                l.neighbors[idx] * l.u[idx];
+    }
+
+    /**
+     * @return the maximal difference of an unknown cell from the average of its neighbors
+     */
+    private static double maxResidual(Level l, int parallelism) {
+        double[] max = new double[l.height];
+        Utils.parallelFor(l.height, (long) l.height * l.width < MIN_CELLS_PER_TASK ? 1 : parallelism, i -> {
+            for (int j = 0; j < l.width; j++) {
+                int idx = l.index(i, j);
+                if (l.type[idx] == UNKNOWN) {
+                    max[i] = Math.max(max[i], Math.abs(residual(l, idx)) / l.neighbors[idx]);
+                }
+            }
+        });
+        double res = 0;
+        for (double d: max) {
+            res = Math.max(res, d);
+        }
+        return res;
+    }
+
+    /**
+     * adds the error of the coarse level, interpolated bilinearly, to the unknown cells of the fine level.
+     * the error of a fixed coarse cell is 0, and an absent one takes the error of the cell next to it
+     */
+    private static void interpolate(Level c, Level l) {
+        for (int i = 0; i < l.height; i++) {
+            int di = i % 2 == 0 ? -c.stride : c.stride;
+            for (int j = 0; j < l.width; j++) {
+                int idx = l.index(i, j);
+                if (l.type[idx] != UNKNOWN) {
+                    continue;
+                }
+                int dj = j % 2 == 0 ? -1 : 1;
+                int k = c.index(i / 2, j / 2);
+                double e = c.u[k];
+                double eRow = c.type[k + di] != ABSENT ? c.u[k + di] : e;
+                double eCol = c.type[k + dj] != ABSENT ? c.u[k + dj] : e;
+                double eDiag = c.type[k + di + dj] != ABSENT ? c.u[k + di + dj] : (eRow + eCol) / 2;
+                l.u[idx] += (9 * e + 3 * eRow + 3 * eCol + eDiag) / 16;
+            }
+        }
+    }
+}
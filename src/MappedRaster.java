@@ -0,0 +1,391 @@
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.SampleModel;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * a single channel image which is held in a memory mapped raw file of doubles (row-major) rather than in the heap,
+ * for images which are too large to be held as a Raster or as a Mat.
+ *
+ * the file is mapped in segments of whole rows, since a single mapping is limited to 2GB.
+ * regions of the image are copied to and from heap Rasters ("tiles"), see readTile() and writePixels().
+ * the image is imported and exported without ever being held in the heap, see importGrayScale() and writeGrayPng().
+ * reads and writes only use absolute positions, so different threads may access different pixels concurrently
+ */
+public class MappedRaster implements AutoCloseable {
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+    private static final int PNG_CHUNK_BYTES = 1 << 16;
+
+    private final FileChannel channel;
+    private final DoubleBuffer[] segments;
+    private final int rowsPerSegment;
+    private final int width;
+    private final int height;
+
+    private MappedRaster(FileChannel ch, int h, int w) throws IOException {
+        channel = ch;
+        height = h;
+        width = w;
+        rowsPerSegment = (int) Math.max(1, MAX_SEGMENT_BYTES / (8L * w));
+        segments = new DoubleBuffer[(h + rowsPerSegment - 1) / rowsPerSegment];
+        for (int s = 0; s < segments.length; s++) {
+            int rows = Math.min(rowsPerSegment, h - s * rowsPerSegment);
+            MappedByteBuffer b = ch.map(FileChannel.MapMode.READ_WRITE, 8L * w * s * rowsPerSegment, 8L * w * rows);
+            segments[s] = b.order(ByteOrder.nativeOrder()).asDoubleBuffer();
+        }
+    }
+
+    /**
+     * creates (or overwrites) the raw file, and maps it
+     * @param file path of the raw file
+     * @param h height of the image
+     * @param w width of the image
+     * @return MappedRaster
+     */
+    public static MappedRaster create(Path file, int h, int w) throws IOException {
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ch.truncate(8L * h * w);
+        return new MappedRaster(ch, h, w);
+    }
+
+    /**
+     * decodes the image in the given path and writes its grayscale (see Utils.toGray()) to a new raw file.
+     * the image is decoded in a single pass, into a memory mapped temporary file next to the raw file rather than
+     * into the heap (see MappedDataBuffer), and then converted to grayscale in stripes of rows, so the whole decoded
+     * image is never held in memory
+     * @param imgPath path to the input image
+     * @param file path of the raw file to create
+     * @param stripeRows number of rows to convert at a time
+     * @return MappedRaster of the grayscale image
+     * @throws IOException in case the image can't be decoded, or it's too large for the ImageIO readers (their
+     * decoded image is limited to 2^31 samples)
+     */
+    public static MappedRaster importGrayScale(String imgPath, Path file, int stripeRows) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new File(imgPath))) {
+            Iterator<ImageReader> readers = in != null ? ImageIO.getImageReaders(in) : null;
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("no image reader for " + imgPath);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in);
+                int h = reader.getHeight(0);
+                int w = reader.getWidth(0);
+                ImageTypeSpecifier type = reader.getImageTypes(0).next();
+                ColorModel cm = type.getColorModel();
+                long rowElements = type.getSampleModel(w, 1).createDataBuffer().getSize();
+                if (rowElements * h > Integer.MAX_VALUE) {
+                    throw new IOException(imgPath + " is too large to be decoded by ImageIO");
+                }
+
+                Path decodedPath = Files.createTempFile(file.toAbsolutePath().getParent(), "decoded", ".raw");
+                MappedDataBuffer decoded;
+                try {
+                    decoded = new MappedDataBuffer(decodedPath, type.getSampleModel(w, 1).getDataType(),
+                            (int) (rowElements * h));
+                } catch (IOException | RuntimeException e) {
+                    // once the buffer is created, closing it deletes the file
+                    Files.deleteIfExists(decodedPath);
+                    throw e;
+                }
+                try (decoded) {
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    param.setDestination(new BufferedImage(cm, java.awt.image.Raster.createWritableRaster(
+                            type.getSampleModel(w, h), decoded, null), cm.isAlphaPremultiplied(), null));
+                    reader.read(0, param);
+
+                    MappedRaster m = create(file, h, w);
+                    for (int top = 0; top < h; top += stripeRows) {
+                        int rows = Math.min(stripeRows, h - top);
+                        SampleModel sm = type.getSampleModel(w, rows);
+                        BufferedImage stripe = new BufferedImage(cm, java.awt.image.Raster.createWritableRaster(sm,
+                                decoded.copy(top * rowElements, sm.createDataBuffer()), null),
+                                cm.isAlphaPremultiplied(), null);
+                        m.writeTile(Utils.toGray(stripe), top, 0);
+                    }
+                    return m;
+                }
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * writes the raster as an 8-bit grayscale png, row by row, so only a single row of the image is held in the heap.
+     * the values are rounded and clamped as in Utils.toBytes()
+     * @param file path of the png file
+     * @throws IOException in case the file can't be written
+     */
+    public void writeGrayPng(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.write(PNG_SIGNATURE);
+            ByteArrayOutputStream header = new ByteArrayOutputStream();
+            DataOutputStream h = new DataOutputStream(header);
+            h.writeInt(width);
+            h.writeInt(height);
+            h.writeByte(8); // bit depth
+            h.writeByte(0); // grayscale
+            h.writeByte(0); // deflate
+            h.writeByte(0); // adaptive filtering, every row is written with filter type 0 (none)
+            h.writeByte(0); // not interlaced
+            writePngChunk(out, "IHDR", header.toByteArray(), header.size());
+
+            double[] row = new double[width];
+            byte[] scanline = new byte[width + 1];
+            try (DeflaterOutputStream z = new DeflaterOutputStream(new PngDataOutputStream(out))) {
+                for (int i = 0; i < height; i++) {
+                    segments[i / rowsPerSegment].get((i % rowsPerSegment) * width, row, 0, width);
+                    for (int j = 0; j < width; j++) {
+                        double v = Math.rint(row[j]);
+                        scanline[j + 1] = (byte) (v < 0 ? 0 : (v > 255 ? 255 : (int) v));
+                    }
+                    z.write(scanline);
+                }
+            }
+            writePngChunk(out, "IEND", new byte[0], 0);
+        }
+    }
+
+    private static void writePngChunk(DataOutputStream out, String type, byte[] data, int length) throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    /**
+     * splits the compressed image data of a png to IDAT chunks. closing it writes the last chunk, and leaves the
+     * underlying stream open
+     */
+    private static class PngDataOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final byte[] chunk = new byte[PNG_CHUNK_BYTES];
+        private int size;
+
+        PngDataOutputStream(DataOutputStream o) {
+            out = o;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                int n = Math.min(len, chunk.length - size);
+                System.arraycopy(b, off, chunk, size, n);
+                size += n;
+                off += n;
+                len -= n;
+                if (size == chunk.length) {
+                    writePngChunk(out, "IDAT", chunk, size);
+                    size = 0;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (size > 0) {
+                writePngChunk(out, "IDAT", chunk, size);
+                size = 0;
+            }
+        }
+    }
+
+    /**
+     * a single bank DataBuffer of integral samples (bytes, shorts or ints), in a memory mapped temporary file, which
+     * an ImageIO reader decodes into instead of the heap. the file is deleted when the buffer is closed
+     */
+    private static class MappedDataBuffer extends DataBuffer implements AutoCloseable {
+        private final FileChannel channel;
+        private final ByteBuffer[] segments;
+        private final int elementBytes;
+
+        MappedDataBuffer(Path file, int dataType, int size) throws IOException {
+            super(dataType, size);
+            if (dataType != TYPE_BYTE && dataType != TYPE_USHORT && dataType != TYPE_SHORT && dataType != TYPE_INT) {
+                throw new IOException("unsupported sample type " + dataType);
+            }
+            elementBytes = getDataTypeSize(dataType) / 8;
+            channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.DELETE_ON_CLOSE);
+            long bytes = (long) size * elementBytes;
+            segments = new ByteBuffer[(int) Math.max(1, (bytes + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES)];
+            try {
+                for (int s = 0; s < segments.length; s++) {
+                    long position = s * MAX_SEGMENT_BYTES;
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, position,
+                            Math.min(MAX_SEGMENT_BYTES, bytes - position)).order(ByteOrder.nativeOrder());
+                }
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        // the segments are a multiple of every element size, so an element never crosses two segments
+
+        @Override
+        public int getElem(int bank, int i) {
+            long position = (long) i * elementBytes;
+            ByteBuffer b = segments[(int) (position / MAX_SEGMENT_BYTES)];
+            int offset = (int) (position % MAX_SEGMENT_BYTES);
+            switch (elementBytes) {
+                case 1:
+                    return b.get(offset) & 0xff;
+                case 2:
+                    return dataType == TYPE_SHORT ? b.getShort(offset) : b.getShort(offset) & 0xffff;
+                default:
+                    return b.getInt(offset);
+            }
+        }
+
+        @Override
+        public void setElem(int bank, int i, int val) {
+            long position = (long) i * elementBytes;
+            ByteBuffer b = segments[(int) (position / MAX_SEGMENT_BYTES)];
+            int offset = (int) (position % MAX_SEGMENT_BYTES);
+            switch (elementBytes) {
+                case 1:
+                    b.put(offset, (byte) val);
+                    break;
+                case 2:
+                    b.putShort(offset, (short) val);
+                    break;
+                default:
+                    b.putInt(offset, val);
+            }
+        }
+
+        /**
+         * copies the elements from the given one to a heap buffer, as many as it holds
+         * @param first index of the first element to copy
+         * @param to buffer to copy to, of the same type
+         * @return to
+         */
+        DataBuffer copy(long first, DataBuffer to) {
+            if (to instanceof DataBufferByte) {
+                byte[] bytes = ((DataBufferByte) to).getData();
+                int copied = 0;
+                while (copied < bytes.length) {
+                    long position = first + copied;
+                    ByteBuffer b = segments[(int) (position / MAX_SEGMENT_BYTES)];
+                    int offset = (int) (position % MAX_SEGMENT_BYTES);
+                    int n = Math.min(bytes.length - copied, b.capacity() - offset);
+                    b.get(offset, bytes, copied, n);
+                    copied += n;
+                }
+            } else {
+                for (int i = 0; i < to.getSize(); i++) {
+                    to.setElem(i, getElem((int) (first + i)));
+                }
+            }
+            return to;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    public double get(int row, int col) {
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * width + col);
+    }
+
+    public void set(int row, int col, double v) {
+        segments[row / rowsPerSegment].put((row % rowsPerSegment) * width + col, v);
+    }
+
+    /**
+     * copies a region of the image to a new heap raster
+     * @param top first row of the region
+     * @param left first col of the region
+     * @param h height of the region
+     * @param w width of the region
+     * @return Raster holding the region, its (0, 0) is (top, left) of this image
+     */
+    public Raster readTile(int top, int left, int h, int w) {
+        Raster tile = new Raster(h, w);
+        for (int i = 0; i < h; i++) {
+            int row = top + i;
+            segments[row / rowsPerSegment].get((row % rowsPerSegment) * width + left, tile.getData(), i * w, w);
+        }
+        return tile;
+    }
+
+    /**
+     * copies a whole heap raster to a region of the image
+     * @param tile the raster to copy
+     * @param top row in this image of the tile's first row
+     * @param left col in this image of the tile's first col
+     */
+    public void writeTile(Raster tile, int top, int left) {
+        for (int i = 0; i < tile.getHeight(); i++) {
+            int row = top + i;
+            segments[row / rowsPerSegment].put((row % rowsPerSegment) * width + left, tile.getData(),
+                    i * tile.getStride(), tile.getWidth());
+        }
+    }
+
+    /**
+     * copies only the given pixels of a tile back to the image
+     * @param tile the tile to copy from
+     * @param top row in this image of the tile's first row
+     * @param left col in this image of the tile's first col
+     * @param pixels packed locations in the tile of the pixels to copy, see Index.pack()
+     */
+    public void writePixels(Raster tile, int top, int left, long[] pixels) {
+        for (long p: pixels) {
+            set(top + Index.rowOf(p), left + Index.colOf(p), tile.get(Index.rowOf(p), Index.colOf(p)));
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
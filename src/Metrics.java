@@ -0,0 +1,101 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * instrumentation of the program's phases (e.g load, hole detection, fill): wall time and counters.
+ * the instance in use is Defs.METRICS, which is NoopMetrics unless metrics are requested, so the instrumented code
+ * costs nothing more than an empty call, see RecordingMetrics
+ *
+ * usage:
+ *     long start = Defs.METRICS.startTime();
+ *     ... the phase ...
+ *     Defs.METRICS.addTime("phase", start);
+ */
+public interface Metrics {
+
+    // the phases of the program
+    String LOAD = "load";
+    String CONVERT = "convert";
+    String HOLE_DETECTION = "hole detection";
+    String PERIMETER_TRACING = "perimeter tracing";
+    String FILL = "fill";
+    String ENCODE = "encode";
+    String WRITE = "write";
+
+    // the counters
+    String IMAGES = "images";
+    String HOLES = "holes";
+    String MISSING_PIXELS = "missing pixels";
+    String BOUNDARY_PIXELS = "boundary pixels";
+    String PIXEL_PAIRS = "pixel pairs evaluated";
+    String FILLED_PIXELS_PER_SECOND = "filled pixels per second";
+    String NEGLECTED_WEIGHT_PPM = "max neglected weight (ppm)";
+    String V_CYCLES = "v-cycles";
+
+    /**
+     * @return the current time in nanoseconds, to be given to addTime() at the end of the phase
+     */
+    long startTime();
+
+    /**
+     * adds the time since startTime to the total time of the phase, and counts a call of the phase
+     * @param phase name of the phase
+     * @param startTime the value returned from startTime() at the beginning of the phase
+     */
+    void addTime(String phase, long startTime);
+
+    /**
+     * adds n to the counter
+     * @param counter name of the counter
+     * @param n value to add
+     */
+    void addCount(String counter, long n);
+
+    /**
+     * sets the counter to n, if n is bigger than its value
+     * @param counter name of the counter
+     * @param n value to compare with
+     */
+    void addMax(String counter, long n);
+
+    /**
+     * @return false if nothing is recorded, so that calculations which are needed only for the counters
+     * can be skipped
+     */
+    boolean isEnabled();
+
+    /**
+     * counts the holes, their missing and boundary pixels, and the pairs of pixels which the given algorithm
+     * evaluates to fill them: (missing, boundary) pairs for algorithm 0, (missing, neighbor) pairs for algorithms
+     * 1 and 4, and none for the other algorithms, whose number of pairs depends on the data
+     * @param holes the holes to count
+     * @param alg the algorithm which fills them, see Defs.ALG
+     */
+    default void addHoleCounts(List<Hole> holes, int alg) {
+        if (!isEnabled()) {
+            return;
+        }
+        long missing = 0;
+        long boundaries = 0;
+        long pairs = 0;
+        for (Hole hole: holes) {
+            int m = hole.getPackedMissingPixels().length;
+            int b = hole.getPackedBoundariesPixels().length;
+            missing += m;
+            boundaries += b;
+            pairs += alg == 0 ? (long) m * b : (alg == 1 || alg == 4 ? 8L * m : 0);
+        }
+        addCount(HOLES, holes.size());
+        addCount(MISSING_PIXELS, missing);
+        addCount(BOUNDARY_PIXELS, boundaries);
+        addCount(PIXEL_PAIRS, pairs);
+    }
+
+    /**
+     * writes the recorded metrics to the given file, as CSV if its name ends with .csv, otherwise as JSON
+     * @param path path of the file
+     * @throws IOException in case the file can't be written
+     */
+    void dump(Path path) throws IOException;
+}
@@ -1,5 +1,6 @@
 import org.opencv.core.Mat;
 import java.util.ArrayList;
+import java.util.Random;
 
 /**
  * utils class for method to simulate our mock hole
@@ -17,6 +18,41 @@ public class MockUtils {
         }
     }
 
+    /**
+     * sets a mock hole in the given raster
+     * @param r the raster to set the hole in
+     * @param holePixels the pixel's positions in which the mock hole will be set
+     */
+    public static void setMockHole(Raster r, Index[] holePixels) {
+        for (Index idx: holePixels) {
+            r.set(idx.getRow(), idx.getCol(), Defs.HOLE_VALUE);
+        }
+    }
+
+    /**
+     * sets a mock hole in all the channels of the given multi channel raster
+     * @param r the raster to set the hole in
+     * @param holePixels the pixel's positions in which the mock hole will be set
+     */
+    public static void setMockHole(ColorRaster r, Index[] holePixels) {
+        for (Index idx: holePixels) {
+            for (int ch = 0; ch < r.getChannels(); ch++) {
+                r.set(idx.getRow(), idx.getCol(), ch, Defs.HOLE_VALUE);
+            }
+        }
+    }
+
+    /**
+     * sets a mock hole in the given memory mapped raster
+     * @param r the raster to set the hole in
+     * @param holePixels the pixel's positions in which the mock hole will be set
+     */
+    public static void setMockHole(MappedRaster r, Index[] holePixels) {
+        for (Index idx: holePixels) {
+            r.set(idx.getRow(), idx.getCol(), Defs.HOLE_VALUE);
+        }
+    }
+
     /**
      * return an array of pixel Index objects, which corresponds to a square hole, according to the given arguments
      * @param topLeft the top left location of the hole
@@ -39,4 +75,85 @@ public class MockUtils {
 
         return idxs.toArray(new Index[idxs.size()]);
     }
+
+    /**
+     * return an array of pixel Index objects, which corresponds to a disc shaped hole
+     * @param center the center of the hole
+     * @param radius radius of the hole
+     * @return Index[] which contains positions of all pixels in the hole
+     */
+    public static Index[] getMockDiscHole(Index center, int radius) {
+        ArrayList<Index> idxs = new ArrayList<>();
+        for (int i = -radius; i <= radius; i++) {
+            for (int j = -radius; j <= radius; j++) {
+                if (i * i + j * j <= radius * radius) {
+                    idxs.add(new Index(center.getRow() + i, center.getCol() + j));
+                }
+            }
+        }
+
+        return idxs.toArray(new Index[idxs.size()]);
+    }
+
+    /**
+     * return an array of pixel Index objects, which corresponds to a thin scratch, going right and slightly down
+     * (a row every 4 cols)
+     * @param start the left most location of the scratch
+     * @param length number of cols of the scratch
+     * @param thickness number of rows of the scratch in every col
+     * @return Index[] which contains positions of all pixels in the hole
+     */
+    public static Index[] getMockScratchHole(Index start, int length, int thickness) {
+        ArrayList<Index> idxs = new ArrayList<>();
+        for (int j = 0; j < length; j++) {
+            for (int i = 0; i < thickness; i++) {
+                idxs.add(new Index(start.getRow() + j / 4 + i, start.getCol() + j));
+            }
+        }
+
+        return idxs.toArray(new Index[idxs.size()]);
+    }
+
+    /**
+     * return an array of pixel Index objects, which corresponds to a grid of small square holes, separated by
+     * gaps of their own size, which covers the given area
+     * @param topLeft the top left location of the area
+     * @param height height of the area
+     * @param width width of the area
+     * @param holeSize height and width of every small hole
+     * @return Index[] which contains positions of all pixels in all the holes
+     */
+    public static Index[] getMockHoleGrid(Index topLeft, int height, int width, int holeSize) {
+        ArrayList<Index> idxs = new ArrayList<>();
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                if ((i / holeSize) % 2 == 0 && (j / holeSize) % 2 == 0) {
+                    idxs.add(new Index(topLeft.getRow() + i, topLeft.getCol() + j));
+                }
+            }
+        }
+
+        return idxs.toArray(new Index[idxs.size()]);
+    }
+
+    /**
+     * creates a synthetic grayscale image: smooth gradients and waves, with some noise, so the algorithms can be
+     * run (e.g benchmarked) without an input image
+     * @param height height of the image
+     * @param width width of the image
+     * @param seed seed of the noise, the same seed gives the same image
+     * @return Raster with values in [0, 255]
+     */
+    public static Raster getMockImage(int height, int width, long seed) {
+        Random rnd = new Random(seed);
+        Raster r = new Raster(height, width);
+        for (int i = 0; i < height; i++) {
+            for (int j = 0; j < width; j++) {
+                double v = 128 + 60 * Math.sin(i / 17.0) * Math.cos(j / 23.0) + 40.0 * (i + j) / (height + width)
+                        + rnd.nextInt(16);
+                r.set(i, j, Math.max(0, Math.min(255, Math.floor(v))));
+            }
+        }
+        return r;
+    }
 }
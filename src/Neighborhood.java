@@ -1,28 +1,73 @@
+import java.util.Arrays;
+
 /**
  * an object which represents the neighboring pixels of image's pixel
+ *
+ * the pixels are held as packed locations (see Index.pack()), in arrays which can hold all 8 neighbors, so the same
+ * object can be reused for every pixel, see Neighborhood.clear(). the Index[] getters are views which are created
+ * when they are called
  */
 public class Neighborhood {
-    private Index[] missingPixels;
-    private Index[] imgPixels;
+    private long[] missingPixels = new long[8];
+    private long[] imgPixels = new long[8];
+    private int missingCount = 0;
+    private int imgCount = 0;
+
+    public Neighborhood() {
+    }
 
     public Neighborhood(Index[] m, Index[] ip) {
-        missingPixels = m;
-        imgPixels = ip;
+        setMissingPixels(m);
+        setImgPixels(ip);
+    }
+
+    /**
+     * removes all the pixels, so the object can be reused for another pixel's neighborhood
+     */
+    public void clear() {
+        missingCount = 0;
+        imgCount = 0;
+    }
+
+    public void addMissingPixel(long p) {
+        missingPixels[missingCount++] = p;
+    }
+
+    public void addImgPixel(long p) {
+        imgPixels[imgCount++] = p;
     }
 
     public Index[] getMissingPixels() {
-        return missingPixels;
+        return Index.unpack(missingPixels, missingCount);
     }
 
     public Index[] getImgPixels() {
+        return Index.unpack(imgPixels, imgCount);
+    }
+
+    public long[] getPackedMissingPixels() {
+        return missingPixels;
+    }
+
+    public long[] getPackedImgPixels() {
         return imgPixels;
     }
 
+    public int getMissingCount() {
+        return missingCount;
+    }
+
+    public int getImgCount() {
+        return imgCount;
+    }
+
     public void setImgPixels(Index[] ip) {
-        imgPixels = ip;
+        imgPixels = Arrays.copyOf(Index.pack(ip), Math.max(8, ip.length));
+        imgCount = ip.length;
     }
 
     public void setMissingPixels(Index[] mp) {
-        missingPixels = mp;
+        missingPixels = Arrays.copyOf(Index.pack(mp), Math.max(8, mp.length));
+        missingCount = mp.length;
     }
 }
@@ -0,0 +1,37 @@
+import java.nio.file.Path;
+
+/**
+ * Metrics which records nothing, the default of Defs.METRICS
+ */
+public final class NoopMetrics implements Metrics {
+    public static final NoopMetrics INSTANCE = new NoopMetrics();
+
+    private NoopMetrics() {
+    }
+
+    @Override
+    public long startTime() {
+        return 0;
+    }
+
+    @Override
+    public void addTime(String phase, long startTime) {
+    }
+
+    @Override
+    public void addCount(String counter, long n) {
+    }
+
+    @Override
+    public void addMax(String counter, long n) {
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public void dump(Path path) {
+    }
+}
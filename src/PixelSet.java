@@ -0,0 +1,118 @@
+import java.util.Arrays;
+
+/**
+ * a set of pixel locations, packed to longs (see Index.pack()), implemented with open addressing over a primitive
+ * array, so it needs neither an object per pixel nor boxing.
+ * the pixels are also kept in the order they were added, see PixelSet.toArray()
+ */
+public class PixelSet {
+    // a packed value which no pixel can have, since rows are never negative
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private long[] table;
+    private long[] items;
+    private int size = 0;
+
+    public PixelSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize the number of pixels which is expected to be added, to avoid resizing
+     */
+    public PixelSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        items = new long[Math.max(4, expectedSize)];
+    }
+
+    /**
+     * @param p packed pixel location
+     * @return true if the pixel wasn't in the set already
+     */
+    public boolean add(long p) {
+        int mask = table.length - 1;
+        int i = hash(p) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == p) {
+                return false;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = p;
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = p;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return true;
+    }
+
+    public boolean add(int row, int col) {
+        return add(Index.pack(row, col));
+    }
+
+    /**
+     * @param p packed pixel location
+     * @return true if the pixel is in the set
+     */
+    public boolean contains(long p) {
+        int mask = table.length - 1;
+        int i = hash(p) & mask;
+        while (table[i] != EMPTY) {
+            if (table[i] == p) {
+                return true;
+            }
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * removes all pixels, keeping the allocated memory for reuse
+     */
+    public void clear() {
+        Arrays.fill(table, EMPTY);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the packed pixels in the order they were added
+     */
+    public long[] toArray() {
+        return Arrays.copyOf(items, size);
+    }
+
+    private void rehash() {
+        long[] old = table;
+        table = new long[old.length * 2];
+        Arrays.fill(table, EMPTY);
+        int mask = table.length - 1;
+        for (long p: old) {
+            if (p != EMPTY) {
+                int i = hash(p) & mask;
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = p;
+            }
+        }
+    }
+
+    /**
+     * mixes all the bits of the packed location, so that neighboring pixels spread over the table
+     */
+    private static int hash(long p) {
+        p ^= p >>> 33;
+        p *= 0xff51afd7ed558ccdL;
+        p ^= p >>> 33;
+        return (int) p;
+    }
+}
@@ -0,0 +1,256 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * fills a large hole coarse to fine, approximating the algorithm in section 2.
+ *
+ * the hole's bounding box is downsampled by 2 into a pyramid, until the number of (missing, boundary) pairs of the
+ * coarsest level is small. the downsampling is hole aware: a coarse pixel is the average of only the boundary pixels
+ * it covers, and it's missing if it covers only missing pixels, so the missing pixels never pollute the averages.
+ * every coarse boundary pixel is weighted by the number of boundary pixels it covers, and placed at their centroid.
+ *
+ * the coarsest level is filled with the formula of section 2. then, on every finer level, the missing pixels are
+ * interpolated from the coarser one, and only the band of missing pixels near the boundaries (where the filling
+ * changes fast) is calculated again with the formula, from the boundaries of that level. on the finest level these
+ * are the original boundaries, so the band is exact. for a hole of n missing pixels and m boundary pixels, this costs
+ * about O(band * m^2) instead of O(n * m)
+ */
+public class PyramidFill {
+
+    // the coarsening stops at a level whose number of (missing, boundary) pairs is below this
+    private static final long COARSEST_PAIRS = 1 << 18;
+
+    /**
+     * a level of the pyramid, over a box of the hole's bounding box size divided by 2^level
+     */
+    private static class Level {
+        private final int height;
+        private final int width;
+        // the value of boundary and filled pixels
+        private final double[] values;
+        // the number of original boundary pixels which a boundary pixel of this level covers, 0 for other pixels
+        private final int[] counts;
+        // the centroid of the original boundary pixels which a boundary pixel of this level covers, in the
+        // coordinates of the finest level
+        private final double[] centroidRows;
+        private final double[] centroidCols;
+        private final boolean[] missing;
+        // the size of a pixel of this level in pixels of the finest level
+        private final int scale;
+
+        // packed locations (see Index.pack()) of the missing and boundary pixels, relative to the box
+        private long[] missingPixels;
+        private BoundarySamples boundaries;
+
+        Level(int h, int w, int s) {
+            height = h;
+            width = w;
+            scale = s;
+            values = new double[h * w];
+            counts = new int[h * w];
+            centroidRows = new double[h * w];
+            centroidCols = new double[h * w];
+            missing = new boolean[h * w];
+        }
+
+        /**
+         * collects the missing and boundary pixels, after the values, counts and missing flags were set
+         */
+        void collect() {
+            int nm = 0;
+            int nb = 0;
+            for (int i = 0; i < height * width; i++) {
+                nm += missing[i] ? 1 : 0;
+                nb += counts[i] > 0 ? 1 : 0;
+            }
+            missingPixels = new long[nm];
+            int[] rows = new int[nb];
+            int[] cols = new int[nb];
+            double[] v = new double[nb];
+            nm = 0;
+            nb = 0;
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    int k = i * width + j;
+                    if (missing[k]) {
+                        missingPixels[nm++] = Index.pack(i, j);
+                    } else if (counts[k] > 0) {
+                        rows[nb] = i;
+                        cols[nb] = j;
+                        v[nb++] = values[k];
+                    }
+                }
+            }
+            boundaries = new BoundarySamples(rows, cols, v);
+        }
+
+        Level coarsen() {
+            Level c = new Level((height + 1) / 2, (width + 1) / 2, 2 * scale);
+            boolean[] hasMissing = new boolean[c.height * c.width];
+            for (int i = 0; i < height; i++) {
+                for (int j = 0; j < width; j++) {
+                    int k = i * width + j;
+                    int ck = (i / 2) * c.width + j / 2;
+                    if (counts[k] > 0) {
+                        c.values[ck] += values[k] * counts[k];
+                        c.centroidRows[ck] += centroidRows[k] * counts[k];
+                        c.centroidCols[ck] += centroidCols[k] * counts[k];
+                        c.counts[ck] += counts[k];
+                    } else if (missing[k]) {
+                        hasMissing[ck] = true;
+                    }
+                }
+            }
+            for (int k = 0; k < c.values.length; k++) {
+                if (c.counts[k] > 0) {
+                    c.values[k] /= c.counts[k];
+                    c.centroidRows[k] /= c.counts[k];
+                    c.centroidCols[k] /= c.counts[k];
+                } else {
+                    c.missing[k] = hasMissing[k];
+                }
+            }
+            c.collect();
+            return c;
+        }
+    }
+
+    /**
+     * fills the hole in the given raster, see class description
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param band the missing pixels in this chessboard distance from the boundaries, or less, are calculated with
+     *             the formula on every level, at least 1
+     * @param parallelism number of threads to use
+     */
+    public static void fillHole(Raster r, Hole hole, int z, double eps, int band, int parallelism) {
+        long[] missing = hole.getPackedMissingPixels();
+        long[] boundaries = hole.getPackedBoundariesPixels();
+        if (missing.length == 0 || boundaries.length == 0) {
+            return;
+        }
+        band = Math.max(1, band);
+
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        Level fine = new Level(hole.getMaxRow() - top + 1, hole.getMaxCol() - left + 1, 1);
+        for (long p: missing) {
+            fine.missing[(Index.rowOf(p) - top) * fine.width + Index.colOf(p) - left] = true;
+        }
+        for (long p: boundaries) {
+            int k = (Index.rowOf(p) - top) * fine.width + Index.colOf(p) - left;
+            fine.values[k] = r.get(Index.rowOf(p), Index.colOf(p));
+            fine.counts[k] = 1;
+            fine.centroidRows[k] = Index.rowOf(p) - top;
+            fine.centroidCols[k] = Index.colOf(p) - left;
+        }
+        fine.collect();
+
+        List<Level> levels = new ArrayList<>();
+        levels.add(fine);
+        Level l = fine;
+        while ((long) l.missingPixels.length * l.boundaries.size() > COARSEST_PAIRS && l.height > 2 && l.width > 2) {
+            l = l.coarsen();
+            levels.add(l);
+        }
+
+        // the coarsest level is filled entirely
+        Level coarsest = levels.get(levels.size() - 1);
+        fillPixels(coarsest, coarsest.missingPixels, z, eps, parallelism);
+
+        for (int k = levels.size() - 2; k >= 0; k--) {
+            Level curr = levels.get(k);
+            interpolate(levels.get(k + 1), curr);
+
+            int[] rings = WavefrontFill.getRings(curr.missingPixels, 0, 0, curr.height, curr.width);
+            int n = 0;
+            long[] near = new long[curr.missingPixels.length];
+            for (long p: curr.missingPixels) {
+                if (rings[Index.rowOf(p) * curr.width + Index.colOf(p)] <= band) {
+                    near[n++] = p;
+                }
+            }
+            fillPixels(curr, Arrays.copyOf(near, n), z, eps, parallelism);
+        }
+
+        for (long p: missing) {
+            r.set(Index.rowOf(p), Index.colOf(p), fine.values[(Index.rowOf(p) - top) * fine.width +
+                    Index.colOf(p) - left]);
+        }
+    }
+
+    /**
+     * fills the given missing pixels of the level with the formula of section 2, every boundary pixel of the level
+     * is weighted by the number of original boundary pixels it covers, and placed at their centroid. the distances
+     * are in pixels of the finest level, so on the finest level this is exactly the formula of section 2
+     */
+    private static void fillPixels(Level l, long[] pixels, int z, double eps, int parallelism) {
+        int n = l.boundaries.size();
+        double[] rows = new double[n];
+        double[] cols = new double[n];
+        double[] counts = new double[n];
+        for (int j = 0; j < n; j++) {
+            int k = l.boundaries.getRows()[j] * l.width + l.boundaries.getCols()[j];
+            rows[j] = l.centroidRows[k];
+            cols[j] = l.centroidCols[k];
+            counts[j] = l.counts[k];
+        }
+        double[] values = l.boundaries.getValues();
+
+        // the center of a pixel of the level, in the coordinates of the finest level
+        double offset = (l.scale - 1) / 2.0;
+        int chunks = (pixels.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        Utils.parallelFor(chunks, parallelism, c -> {
+            for (int i = c * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(pixels.length, (c + 1) * Defs.PARALLEL_CHUNK_SIZE);
+                 i++) {
+                int row = Index.rowOf(pixels[i]);
+                int col = Index.colOf(pixels[i]);
+                double y = row * l.scale + offset;
+                double x = col * l.scale + offset;
+                double sum = 0;
+                double weightsSum = 0;
+                for (int j = 0; j < n; j++) {
+                    double dr = rows[j] - y;
+                    double dc = cols[j] - x;
+                    double w = counts[j] / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+                    sum += w * values[j];
+                    weightsSum += w;
+                }
+                l.values[row * l.width + col] = sum / weightsSum;
+            }
+        });
+    }
+
+    /**
+     * sets the missing pixels of the fine level with bilinear interpolation of the coarse level, from the coarse
+     * pixels which have a value (boundary or missing ones)
+     */
+    private static void interpolate(Level c, Level l) {
+        for (long p: l.missingPixels) {
+            int i = Index.rowOf(p);
+            int j = Index.colOf(p);
+            int ci = i / 2;
+            int cj = j / 2;
+            int di = i % 2 == 0 ? -1 : 1;
+            int dj = j % 2 == 0 ? -1 : 1;
+            double sum = 0;
+            double weightsSum = 0;
+            for (int[] n: new int[][] {{0, 0, 9}, {di, 0, 3}, {0, dj, 3}, {di, dj, 1}}) {
+                int row = ci + n[0];
+                int col = cj + n[1];
+                if (row < 0 || row >= c.height || col < 0 || col >= c.width) {
+                    continue;
+                }
+                int k = row * c.width + col;
+                if (c.missing[k] || c.counts[k] > 0) {
+                    sum += n[2] * c.values[k];
+                    weightsSum += n[2];
+                }
+            }
+            l.values[i * l.width + j] = sum / weightsSum;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfDouble;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+
+import static org.opencv.core.CvType.CV_64FC1;
+
+/**
+ * a java-heap, row-major representation of a single channel image
+ *
+ * all of our algorithms work on this object instead of OpenCv's MatOfDouble, because every MatOfDouble.get() / put()
+ * is a native call which also allocates a new array. the pixels are copied in and out of OpenCv in a single bulk
+ * copy, see Raster.fromMat() and Raster.copyTo()
+ */
+public class Raster {
+    private final double[] data;
+    private final int width;
+    private final int height;
+
+    // distance in the data array between two vertically adjacent pixels
+    private final int stride;
+
+    public Raster(int h, int w) {
+        this(new double[h * w], h, w, w);
+    }
+
+    public Raster(double[] d, int h, int w, int s) {
+        data = d;
+        height = h;
+        width = w;
+        stride = s;
+    }
+
+    /**
+     * creates a raster holding a copy of the given single channel matrix, with a single bulk copy
+     * @param m matrix to copy, of type CV_64FC1
+     * @return Raster with the same pixel values as m
+     */
+    public static Raster fromMat(Mat m) {
+        Raster r = new Raster(m.rows(), m.cols());
+        m.get(0, 0, r.data);
+        return r;
+    }
+
+    /**
+     * copies the values of this raster back into the given matrix, with a single bulk copy
+     * @param m matrix to copy to, of type CV_64FC1 and with the same size as this raster
+     */
+    public void copyTo(Mat m) {
+        if (stride == width) {
+            m.put(0, 0, data);
+        } else {
+            double[] rowData = new double[width];
+            for (int i = 0; i < height; i++) {
+                System.arraycopy(data, i * stride, rowData, 0, width);
+                m.put(i, 0, rowData);
+            }
+        }
+    }
+
+    /**
+     * @return new MatOfDouble holding a copy of this raster
+     */
+    public MatOfDouble toMat() {
+        MatOfDouble m = new MatOfDouble(new Mat(height, width, CV_64FC1));
+        copyTo(m);
+        return m;
+    }
+
+    /**
+     * @return deep copy of this raster
+     */
+    public Raster copy() {
+        Raster r = new Raster(height, width);
+        for (int i = 0; i < height; i++) {
+            System.arraycopy(data, i * stride, r.data, i * width, width);
+        }
+        return r;
+    }
+
+    /**
+     * creates a grayscale image of this raster, values are rounded and saturated as in Utils.toBytes()
+     * @return BufferedImage of type TYPE_BYTE_GRAY
+     */
+    public BufferedImage toGrayImg() {
+        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Utils.toBytes(this, ((DataBufferByte) img.getRaster().getDataBuffer()).getData());
+        return img;
+    }
+
+    public double get(int row, int col) {
+        return data[row * stride + col];
+    }
+
+    public void set(int row, int col, double v) {
+        data[row * stride + col] = v;
+    }
+
+    public boolean contains(int row, int col) {
+        return row >= 0 && row < height && col >= 0 && col < width;
+    }
+
+    public double[] getData() {
+        return data;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStride() {
+        return stride;
+    }
+}
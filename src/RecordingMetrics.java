@@ -0,0 +1,109 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Metrics which records the total wall time and the number of calls of every phase, and the counters,
+ * in the order they were first recorded. it may be used by several threads, in which case the time of a phase is
+ * the sum of the times of all its calls
+ */
+public class RecordingMetrics implements Metrics {
+
+    // per phase: total nanoseconds, number of calls
+    private final Map<String, long[]> phases = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+
+    @Override
+    public long startTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public void addTime(String phase, long startTime) {
+        long t = System.nanoTime() - startTime;
+        synchronized (this) {
+            long[] p = phases.computeIfAbsent(phase, k -> new long[2]);
+            p[0] += t;
+            p[1]++;
+        }
+    }
+
+    @Override
+    public synchronized void addCount(String counter, long n) {
+        counters.merge(counter, n, Long::sum);
+    }
+
+    @Override
+    public synchronized void addMax(String counter, long n) {
+        counters.merge(counter, n, Long::max);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * @param phase name of the phase
+     * @return total time of the phase in seconds, 0 if it wasn't recorded
+     */
+    public synchronized double getSeconds(String phase) {
+        long[] p = phases.get(phase);
+        return p == null ? 0 : p[0] / 1e9;
+    }
+
+    /**
+     * @param counter name of the counter
+     * @return value of the counter, 0 if it wasn't recorded
+     */
+    public synchronized long getCount(String counter) {
+        return counters.getOrDefault(counter, 0L);
+    }
+
+    @Override
+    public void dump(Path path) throws IOException {
+        Files.write(path, path.toString().endsWith(".csv") ? toCsv() : List.of(toJson()));
+    }
+
+    /**
+     * @return lines of CSV, with the columns: type (phase or counter), name, value (milliseconds for a phase),
+     * calls (for a phase)
+     */
+    public synchronized List<String> toCsv() {
+        List<String> lines = new ArrayList<>();
+        lines.add("type,name,value,calls");
+        for (Map.Entry<String, long[]> e: phases.entrySet()) {
+            lines.add(String.format(Locale.ROOT, "phase,%s,%.3f,%d", e.getKey(), e.getValue()[0] / 1e6,
+                    e.getValue()[1]));
+        }
+        for (Map.Entry<String, Long> e: counters.entrySet()) {
+            lines.add(String.format(Locale.ROOT, "counter,%s,%d,", e.getKey(), e.getValue()));
+        }
+        return lines;
+    }
+
+    /**
+     * @return JSON object: {"phases": {name: {"ms": total time, "calls": calls}, ...}, "counters": {name: value}}
+     */
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder("{\"phases\": {");
+        String sep = "";
+        for (Map.Entry<String, long[]> e: phases.entrySet()) {
+            sb.append(sep).append(String.format(Locale.ROOT, "\"%s\": {\"ms\": %.3f, \"calls\": %d}", e.getKey(),
+                    e.getValue()[0] / 1e6, e.getValue()[1]));
+            sep = ", ";
+        }
+        sb.append("}, \"counters\": {");
+        sep = "";
+        for (Map.Entry<String, Long> e: counters.entrySet()) {
+            sb.append(sep).append(String.format(Locale.ROOT, "\"%s\": %d", e.getKey(), e.getValue()));
+            sep = ", ";
+        }
+        return sb.append("}}").toString();
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * the SIMD weighting loop of algorithm 0. its implementation, VectorFill, depends on the (incubating) Vector API, so
+ * it's compiled only if the JDK has the module, and it's loaded by reflection, see Utils.isVectorApiAvailable()
+ */
+public interface SimdFill {
+
+    /**
+     * same as Utils.getPixelFilling(BoundarySamples b, int row, int col, int z, double eps), vectorized
+     * @param b the boundary pixels of the hole
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @return the value to fill the missing pixel with
+     */
+    double getPixelFilling(BoundarySamples b, int row, int col, int z, double eps);
+
+    /**
+     * same as Utils.getPixelFillingFloat(), vectorized
+     * @param b the boundary pixels of the hole
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @return the value to fill the missing pixel with
+     */
+    float getPixelFillingFloat(BoundarySamples b, int row, int col, int z, float eps);
+}
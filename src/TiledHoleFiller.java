@@ -0,0 +1,49 @@
+import java.util.List;
+
+/**
+ * fills the holes of an image which is held in a memory mapped raw file (see MappedRaster), so that only the tiles
+ * around the holes are held in the heap.
+ *
+ * the holes are found from a bitmask of the image (one bit per pixel), which is built stripe by stripe. then, for
+ * every hole, the tile of its bounding box is copied to a heap Raster, filled, and only its missing pixels are written
+ * back, so tiles of different holes may overlap. the bounding box contains the hole's boundaries, which is all that the
+ * algorithms read: the ones of section 2 read only the boundaries, and the circular ones and the Laplace one only the
+ * neighbors of missing pixels
+ */
+public class TiledHoleFiller {
+
+    /**
+     * finds all the holes in the image, and fills each one of them with the given algorithm
+     * @param m the image
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoles(MappedRaster m, int alg, int z, double eps, int parallelism) {
+        List<Hole> holes = HoleMask.fromMappedRaster(m, Defs.TILE_STRIPE_ROWS).findHoles(parallelism);
+        if (holes.size() == 1) {
+            fillHole(m, holes.get(0), alg, z, eps, parallelism);
+            return;
+        }
+        Utils.parallelFor(holes.size(), parallelism, i -> fillHole(m, holes.get(i), alg, z, eps, 1));
+    }
+
+    /**
+     * fills a single hole, in a tile which covers it
+     * @param m the image
+     * @param hole the hole, in the image's coordinates
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHole(MappedRaster m, Hole hole, int alg, int z, double eps, int parallelism) {
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        Raster tile = m.readTile(top, left, hole.getMaxRow() - top + 1, hole.getMaxCol() - left + 1);
+        Hole local = hole.translate(-top, -left);
+        Utils.fillHoleByAlg(tile, local, alg, z, eps, parallelism);
+        m.writePixels(tile, top, left, local.getPackedMissingPixels());
+    }
+}
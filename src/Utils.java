@@ -1,9 +1,19 @@
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfDouble;
+import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.BiFunction;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
 
 import static org.opencv.core.CvType.CV_64FC1;
 
@@ -12,6 +22,12 @@ import static org.opencv.core.CvType.CV_64FC1;
  */
 public class Utils {
 
+    // fork/join pools by their parallelism, see Utils.getForkJoinPool()
+    private static final Map<Integer, ForkJoinPool> pools = new HashMap<>();
+
+    // the SIMD weighting loop, null if the Vector API isn't available, see Utils.isVectorApiAvailable()
+    private static final SimdFill SIMD_FILL = loadSimdFill();
+
     /**
      * fills the hole in the given matrix, according to algorithm in section 2
      * @param m matrix to fill
@@ -20,10 +36,633 @@ public class Utils {
      * @param eps configurable argument as specifies in the task description
      */
     public static void fillHole(MatOfDouble m, Hole hole, int z, double eps) {
-        for (Index idx : hole.getMissingPixels()) {
-            MatOfDouble w = getDefaultWeights(idx, hole.getBoundariesPixels(), z, eps);
-            fillMissingPixel(m, hole.getBoundariesPixels(), idx, w);
+        Raster r = Raster.fromMat(m);
+        fillHole(r, hole, z, eps);
+        r.copyTo(m);
+    }
+
+    /**
+     * fills the hole in the given raster, according to algorithm in section 2
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     */
+    public static void fillHole(Raster r, Hole hole, int z, double eps) {
+        fillHole(r, hole, z, eps, 1, false);
+    }
+
+    /**
+     * fills the hole in the given raster, according to algorithm in section 2, using several threads.
+     * the result is bit-identical to the one of Utils.fillHole(Raster r, Hole hole, int z, double eps)
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use, 1 or less means the sequential algorithm will run
+     */
+    public static void fillHole(Raster r, Hole hole, int z, double eps, int parallelism) {
+        fillHole(r, hole, z, eps, parallelism, false);
+    }
+
+    /**
+     * fills the hole in the given raster, according to algorithm in section 2, using several threads and
+     * optionally SIMD instructions (see VectorFill). if simd is requested but the Vector API module isn't available,
+     * the scalar code will run
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use, 1 or less means the sequential algorithm will run
+     * @param simd if true, the weighting loop will run with SIMD instructions
+     */
+    public static void fillHole(Raster r, Hole hole, int z, double eps, int parallelism, boolean simd) {
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+        BoundarySamples b = BoundarySamples.gather(r, hole.getPackedBoundariesPixels());
+        boolean useSimd = simd && isVectorApiAvailable();
+
+        // a lookup table of the weights by offset, null in case it would be too big (then weights are calculated)
+        WeightTable t = useSimd ? null : WeightTable.get(z, eps, hole.getMaxRow() - hole.getMinRow(),
+                hole.getMaxCol() - hole.getMinCol());
+
+        if (parallelism <= 1) {
+            fillHoleRange(r, missing, b, z, eps, useSimd, t, 0, missing.length);
+            return;
         }
+        getForkJoinPool(parallelism).invoke(new FillHoleTask(r, missing, b, z, eps, useSimd, t, 0, missing.length));
+    }
+
+    /**
+     * fills the hole in the given raster, approximating the algorithm in section 2 with a quadtree over the
+     * boundary pixels, see BoundaryQuadTree
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param theta accuracy argument, 0 gives the exact result, bigger values are faster and less accurate
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoleHierarchical(Raster r, Hole hole, int z, double eps, double theta, int parallelism) {
+        BoundaryQuadTree tree = new BoundaryQuadTree(BoundarySamples.gather(r, hole.getPackedBoundariesPixels()));
+        long[] missing = hole.getPackedMissingPixels();
+        parallelFor(missing.length, parallelism, i -> {
+            int row = Index.rowOf(missing[i]);
+            int col = Index.colOf(missing[i]);
+            r.set(row, col, tree.getPixelFilling(row, col, z, eps, theta));
+        });
+    }
+
+    /**
+     * fills the hole in the given raster, according to algorithm in section 2, for all the missing pixels at once
+     * using FFT convolutions over the hole's bounding box, see FftFill
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoleFft(Raster r, Hole hole, int z, double eps, int parallelism) {
+        FftFill.fillHole(r, hole, z, eps, parallelism);
+    }
+
+    /**
+     * fills the hole in the given raster coarse to fine, approximating the algorithm in section 2, see PyramidFill
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param band width of the band of missing pixels near the boundaries which is calculated on every level
+     * @param parallelism number of threads to use
+     */
+    public static void fillHolePyramid(Raster r, Hole hole, int z, double eps, int band, int parallelism) {
+        PyramidFill.fillHole(r, hole, z, eps, band, parallelism);
+    }
+
+    /**
+     * fills the hole in the given raster with the solution of the Laplace equation, with the boundaries as
+     * Dirichlet data, using multigrid, see LaplaceFill
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param tolerance the maximal difference of a missing pixel from the average of its neighbors (gray levels)
+     * @param maxCycles the maximal number of multigrid V-cycles
+     * @param parallelism number of threads to use
+     * @return number of V-cycles which ran
+     */
+    public static int fillHoleHarmonic(Raster r, Hole hole, double tolerance, int maxCycles, int parallelism) {
+        return LaplaceFill.fillHole(r, hole, tolerance, maxCycles, parallelism);
+    }
+
+    /**
+     * fills the hole in the given raster, approximating the algorithm in section 2 by weighting only the boundary
+     * pixels within the given radius, or the k nearest ones, which are found with a grid, see BoundaryGrid
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param radius the radius, used if k is 0
+     * @param k the number of nearest boundary pixels to weight, or 0 to weight the ones within the radius
+     * @param parallelism number of threads to use
+     * @return a bound on the relative weight of the neglected boundary pixels, the maximum over the missing pixels
+     */
+    public static double fillHoleTruncated(Raster r, Hole hole, int z, double eps, double radius, int k,
+                                           int parallelism) {
+        BoundaryGrid grid = new BoundaryGrid(BoundarySamples.gather(r, hole.getPackedBoundariesPixels()));
+        long[] missing = hole.getPackedMissingPixels();
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        double[] bounds = new double[chunks];
+        parallelFor(chunks, parallelism, c -> {
+            BoundaryGrid.Buffers buffers = new BoundaryGrid.Buffers(k);
+            double[] out = new double[2];
+            for (int i = c * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (c + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                int row = Index.rowOf(missing[i]);
+                int col = Index.colOf(missing[i]);
+                grid.getPixelFilling(row, col, z, eps, radius, k, buffers, out);
+                r.set(row, col, out[0]);
+                bounds[c] = Math.max(bounds[c], out[1]);
+            }
+        });
+        double bound = 0;
+        for (double b: bounds) {
+            bound = Math.max(bound, b);
+        }
+        return bound;
+    }
+
+    /**
+     * fills every one of the given holes independently, with the given algorithm (see Defs.ALG).
+     * when there are several holes, they are filled in parallel, otherwise the single hole is filled with
+     * the given parallelism
+     * @param r raster to fill
+     * @param holes the holes to fill, as returned from Utils.findHoles()
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoles(Raster r, List<Hole> holes, int alg, int z, double eps, int parallelism) {
+        if (holes.size() == 1) {
+            fillHoleByAlg(r, holes.get(0), alg, z, eps, parallelism);
+            return;
+        }
+        parallelFor(holes.size(), parallelism, i -> fillHoleByAlg(r, holes.get(i), alg, z, eps, 1));
+    }
+
+    /**
+     * fills a single hole with the given algorithm (see Defs.ALG), other arguments of the algorithms,
+     * e.g theta of algorithm 2 or the radius of algorithm 5, are taken from Defs
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoleByAlg(Raster r, Hole hole, int alg, int z, double eps, int parallelism) {
+        if (hole.getPackedMissingPixels().length == 0) {
+            return;
+        }
+        if (alg == 0) {
+            fillHole(r, hole, z, eps, parallelism, Defs.SIMD);
+        } else if (alg == 1) {
+            long start = Defs.METRICS.startTime();
+            long[] perimeter = getOuterPerimeter(r, hole);
+            Defs.METRICS.addTime(Metrics.PERIMETER_TRACING, start);
+            fillHoleCircular(r, perimeter);
+        } else if (alg == 2) {
+            fillHoleHierarchical(r, hole, z, eps, Defs.THETA, parallelism);
+        } else if (alg == 3) {
+            fillHoleFft(r, hole, z, eps, parallelism);
+        } else if (alg == 4) {
+            fillHoleCircularWavefront(r, hole, parallelism);
+        } else if (alg == 5) {
+            double bound = fillHoleTruncated(r, hole, z, eps, Defs.CUTOFF_RADIUS, Defs.K_NEAREST, parallelism);
+            Defs.METRICS.addMax(Metrics.NEGLECTED_WEIGHT_PPM, Math.round(bound * 1e6));
+        } else if (alg == 6) {
+            int cycles = fillHoleHarmonic(r, hole, Defs.LAPLACE_TOLERANCE, Defs.LAPLACE_MAX_CYCLES, parallelism);
+            Defs.METRICS.addCount(Metrics.V_CYCLES, cycles);
+        } else if (alg == 7) {
+            fillHolePyramid(r, hole, z, eps, Defs.PYRAMID_BAND, parallelism);
+        }
+    }
+
+    /**
+     * see Utils.fillHoles(Raster r, List<Hole> holes, int alg, int z, double eps, int parallelism), with the given
+     * precision of the working raster (see Defs.PRECISION). in float precision algorithms 0 and 1 run on a
+     * FloatRaster, in fixed point precision algorithm 1 runs on a FixedRaster (and algorithm 0 in float precision).
+     * the other algorithms always run in double precision.
+     * every hole is filled on a working raster of its bounding box only, the filled pixels are copied back to r
+     * @param r raster to fill
+     * @param holes the holes to fill, as returned from Utils.findHoles()
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     * @param precision the precision of the working raster, see Defs.PRECISION
+     */
+    public static void fillHoles(Raster r, List<Hole> holes, int alg, int z, double eps, int parallelism,
+                                 int precision) {
+        if (precision == Defs.PRECISION_DOUBLE || (alg != 0 && alg != 1)) {
+            fillHoles(r, holes, alg, z, eps, parallelism);
+            return;
+        }
+
+        // the perimeters are followed on r, before the working raster is created
+        long[][] perimeters = new long[holes.size()][];
+        if (alg == 1) {
+            long start = Defs.METRICS.startTime();
+            for (int i = 0; i < holes.size(); i++) {
+                perimeters[i] = getOuterPerimeter(r, holes.get(i));
+            }
+            Defs.METRICS.addTime(Metrics.PERIMETER_TRACING, start);
+        }
+        int holeParallelism = holes.size() == 1 ? parallelism : 1;
+        parallelFor(holes.size(), parallelism, i ->
+                fillHole(r, holes.get(i), perimeters[i], alg, z, eps, holeParallelism, precision));
+    }
+
+    /**
+     * fills a single hole for Utils.fillHoles(Raster r, ..., int precision), on a working raster of the hole's
+     * bounding box, which contains its missing pixels and all their neighbors
+     */
+    private static void fillHole(Raster r, Hole hole, long[] perimeter, int alg, int z, double eps,
+                                 int parallelism, int precision) {
+        if (hole.getPackedMissingPixels().length == 0) {
+            return;
+        }
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        int h = hole.getMaxRow() - top + 1;
+        int w = hole.getMaxCol() - left + 1;
+        Hole local = hole.translate(-top, -left);
+        if (alg == 0) {
+            FloatRaster f = FloatRaster.fromRaster(r, top, left, h, w);
+            fillHole(f, local, z, eps, parallelism, Defs.SIMD);
+            f.copyTo(r, local.getPackedMissingPixels(), top, left);
+            return;
+        }
+
+        long[] localPerimeter = new long[perimeter.length];
+        for (int i = 0; i < perimeter.length; i++) {
+            localPerimeter[i] = Index.pack(Index.rowOf(perimeter[i]) - top, Index.colOf(perimeter[i]) - left);
+        }
+        if (precision == Defs.PRECISION_FIXED) {
+            FixedRaster f = FixedRaster.fromRaster(r, top, left, h, w);
+            fillHoleCircular(f, localPerimeter);
+            f.copyTo(r, local.getPackedMissingPixels(), top, left);
+        } else {
+            FloatRaster f = FloatRaster.fromRaster(r, top, left, h, w);
+            fillHoleCircular(f, localPerimeter);
+            f.copyTo(r, local.getPackedMissingPixels(), top, left);
+        }
+    }
+
+    /**
+     * fills every one of the given holes in a multi channel raster, see Utils.fillHoles(Raster r, ...).
+     * algorithms 0 and 1 evaluate every weight (or neighborhood) once and apply it to all the channels in the same
+     * pass, the other algorithms fill every channel separately
+     * @param r raster to fill
+     * @param holes the holes to fill, as returned from Utils.findHoles(ColorRaster m, int parallelism)
+     * @param alg the algorithm to fill with, see Defs.ALG
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoles(ColorRaster r, List<Hole> holes, int alg, int z, double eps, int parallelism) {
+        if (alg != 0 && alg != 1) {
+            for (int ch = 0; ch < r.getChannels(); ch++) {
+                Raster c = r.getChannel(ch);
+                fillHoles(c, holes, alg, z, eps, parallelism);
+                for (Hole hole: holes) {
+                    r.setChannel(ch, c, hole.getPackedMissingPixels());
+                }
+            }
+            return;
+        }
+
+        // the circular algorithm tracks which pixels are still missing on a single channel copy, it's shared by
+        // all the holes since they never touch each other's pixels
+        Raster guide = alg == 1 ? r.getChannel(0) : null;
+        if (holes.size() == 1) {
+            fillHoleByAlg(r, guide, holes.get(0), alg, z, eps, parallelism);
+            return;
+        }
+        parallelFor(holes.size(), parallelism, i -> fillHoleByAlg(r, guide, holes.get(i), alg, z, eps, 1));
+    }
+
+    private static void fillHoleByAlg(ColorRaster r, Raster guide, Hole hole, int alg, int z, double eps,
+                                      int parallelism) {
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+        if (alg == 0) {
+            fillHole(r, hole, z, eps, parallelism);
+        } else {
+            long start = Defs.METRICS.startTime();
+            long[] perimeter = getOuterPerimeter(guide, hole);
+            Defs.METRICS.addTime(Metrics.PERIMETER_TRACING, start);
+            fillHoleCircular(r, guide, perimeter);
+        }
+    }
+
+    /**
+     * runs body for every i in [0, n), on a fork/join pool with the given parallelism
+     * @param n number of iterations
+     * @param parallelism number of threads to use, 1 or less means it will run in the current thread
+     * @param body the iteration
+     */
+    public static void parallelFor(int n, int parallelism, IntConsumer body) {
+        if (parallelism <= 1) {
+            for (int i = 0; i < n; i++) {
+                body.accept(i);
+            }
+            return;
+        }
+        getForkJoinPool(parallelism).submit(() -> IntStream.range(0, n).parallel().forEach(body)).join();
+    }
+
+    /**
+     * returns the maximal absolute difference between the two rasters in the given pixels,
+     * used in test mode to compare the results of different algorithms
+     * @param r1 first raster
+     * @param r2 second raster
+     * @param pixels locations of the pixels to compare
+     * @return the maximal absolute difference
+     */
+    public static double maxDeviation(Raster r1, Raster r2, Index[] pixels) {
+        return maxDeviation(r1, r2, Index.pack(pixels));
+    }
+
+    /**
+     * see Utils.maxDeviation(Raster r1, Raster r2, Index[] pixels)
+     * @param r1 first raster
+     * @param r2 second raster
+     * @param pixels packed locations of the pixels to compare, see Index.pack()
+     * @return the maximal absolute difference
+     */
+    public static double maxDeviation(Raster r1, Raster r2, long[] pixels) {
+        double max = 0;
+        for (long p: pixels) {
+            int row = Index.rowOf(p);
+            int col = Index.colOf(p);
+            max = Math.max(max, Math.abs(r1.get(row, col) - r2.get(row, col)));
+        }
+        return max;
+    }
+
+    /**
+     * @return true if the module jdk.incubator.vector, which VectorFill depends on, is available at runtime, and
+     * VectorFill was compiled (the build skips it when the JDK hasn't the module)
+     */
+    public static boolean isVectorApiAvailable() {
+        return SIMD_FILL != null;
+    }
+
+    /**
+     * @return a VectorFill, loaded by reflection so this class doesn't depend on it, or null if the Vector API
+     * module or VectorFill are missing
+     */
+    private static SimdFill loadSimdFill() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return null;
+        }
+        try {
+            return (SimdFill) Class.forName("VectorFill").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    /**
+     * fills the missing pixels in the range [from, to) of the given array, according to algorithm in section 2
+     * @param r raster to fill
+     * @param missing packed locations of the missing pixels of the hole, see Index.pack()
+     * @param b the boundary pixels of the hole, as they were gathered from r
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param simd if true VectorFill will be used, it must be checked before that the Vector API is available
+     * @param t lookup table of the weights, which covers the hole's extent, or null to calculate the weights
+     * @param from first index (inclusive) of missing pixel to fill
+     * @param to last index (exclusive) of missing pixel to fill
+     */
+    static void fillHoleRange(Raster r, long[] missing, BoundarySamples b, int z, double eps, boolean simd,
+                              WeightTable t, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int row = Index.rowOf(missing[i]);
+            int col = Index.colOf(missing[i]);
+            double p;
+            if (simd) {
+                p = SIMD_FILL.getPixelFilling(b, row, col, z, eps);
+            } else if (t != null) {
+                p = t.getPixelFilling(b, row, col);
+            } else {
+                p = getPixelFilling(b, row, col, z, eps);
+            }
+            r.set(row, col, p);
+        }
+    }
+
+    /**
+     * fills the hole in a single precision raster, according to algorithm in section 2. the weights and the sums
+     * are calculated in single precision, so the SIMD loop (see VectorFill) evaluates twice as many boundary pixels
+     * in every step
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use, 1 or less means the sequential algorithm will run
+     * @param simd if true, the weighting loop will run with SIMD instructions
+     */
+    public static void fillHole(FloatRaster r, Hole hole, int z, double eps, int parallelism, boolean simd) {
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+        BoundarySamples b = BoundarySamples.gather(r, hole.getPackedBoundariesPixels());
+        boolean useSimd = simd && isVectorApiAvailable();
+        float epsF = (float) eps;
+
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        parallelFor(chunks, parallelism, k -> {
+            for (int i = k * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (k + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                int row = Index.rowOf(missing[i]);
+                int col = Index.colOf(missing[i]);
+                r.set(row, col, useSimd ? SIMD_FILL.getPixelFillingFloat(b, row, col, z, epsF)
+                        : getPixelFillingFloat(b, row, col, z, epsF));
+            }
+        });
+    }
+
+    /**
+     * same as Utils.getPixelFilling(BoundarySamples b, int row, int col, int z, double eps), in single precision
+     * @param b the boundary pixels of the hole
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @return the value to fill the missing pixel with
+     */
+    public static float getPixelFillingFloat(BoundarySamples b, int row, int col, int z, float eps) {
+        int[] rows = b.getRows();
+        int[] cols = b.getCols();
+        float[] values = b.getValuesAsFloats();
+
+        // the weights are in single precision, but the sums are accumulated in double precision, since a single
+        // float accumulator loses the last bits of a long sum (the SIMD loop has a partial sum per lane)
+        double sum = 0;
+        double weightsSum = 0;
+        for (int i = 0; i < values.length; i++) {
+            int dr = rows[i] - row;
+            int dc = cols[i] - col;
+            float w = 1f / ((float) distPow(dr * dr + dc * dc, z) + eps);
+            sum += w * values[i];
+            weightsSum += w;
+        }
+        return (float) (sum / weightsSum);
+    }
+
+    /**
+     * fills the hole in a multi channel raster, according to algorithm in section 2. every weight is calculated
+     * once (or taken from a WeightTable) and applied to all the channels, so it costs barely more than filling
+     * a single channel
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param parallelism number of threads to use, 1 or less means the sequential algorithm will run
+     */
+    public static void fillHole(ColorRaster r, Hole hole, int z, double eps, int parallelism) {
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+        BoundarySamples b = BoundarySamples.gather(r, hole.getPackedBoundariesPixels());
+        WeightTable t = WeightTable.get(z, eps, hole.getMaxRow() - hole.getMinRow(),
+                hole.getMaxCol() - hole.getMinCol());
+
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        parallelFor(chunks, parallelism, k -> fillHoleRange(r, missing, b, z, eps, t,
+                k * Defs.PARALLEL_CHUNK_SIZE, Math.min(missing.length, (k + 1) * Defs.PARALLEL_CHUNK_SIZE)));
+    }
+
+    /**
+     * fills the missing pixels in the range [from, to) of a multi channel raster, see
+     * Utils.fillHole(ColorRaster r, Hole hole, int z, double eps, int parallelism)
+     */
+    static void fillHoleRange(ColorRaster r, long[] missing, BoundarySamples b, int z, double eps, WeightTable t,
+                              int from, int to) {
+        double[] p = new double[b.getChannels()];
+        for (int i = from; i < to; i++) {
+            int row = Index.rowOf(missing[i]);
+            int col = Index.colOf(missing[i]);
+            getPixelFilling(b, row, col, z, eps, t, p);
+            for (int ch = 0; ch < p.length; ch++) {
+                r.set(row, col, ch, p[ch]);
+            }
+        }
+    }
+
+    /**
+     * the values of all the channels of a missing pixel according to the formula in section 2, with the default
+     * weights function. every weight is calculated once and accumulated to all the channels in the same pass
+     * @param b the boundary pixels of the hole, gathered from a multi channel raster
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param t lookup table of the weights, which covers the hole's extent, or null to calculate the weights
+     * @param out array of size b.getChannels(), which is set with the values to fill the missing pixel with
+     */
+    public static void getPixelFilling(BoundarySamples b, int row, int col, int z, double eps, WeightTable t,
+                                       double[] out) {
+        int[] rows = b.getRows();
+        int[] cols = b.getCols();
+        double[] values = b.getValues();
+        int ch = b.getChannels();
+
+        Arrays.fill(out, 0.0);
+        double weightsSum = 0;
+        for (int i = 0; i < rows.length; i++) {
+            int dr = rows[i] - row;
+            int dc = cols[i] - col;
+            double w = t != null ? t.weight(dr, dc) : 1.0 / (distPow(dr * dr + dc * dc, z) + eps);
+            for (int k = 0, v = i * ch; k < ch; k++, v++) {
+                out[k] += w * values[v];
+            }
+            weightsSum += w;
+        }
+        for (int k = 0; k < ch; k++) {
+            out[k] /= weightsSum;
+        }
+    }
+
+    /**
+     * the value of a missing pixel according to the formula in section 2, with the default weights function.
+     * the weights and the weighted sum are calculated in a single pass over the boundary pixels, without
+     * allocating anything
+     * @param b the boundary pixels of the hole
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @return the value to fill the missing pixel with
+     */
+    public static double getPixelFilling(BoundarySamples b, int row, int col, int z, double eps) {
+        int[] rows = b.getRows();
+        int[] cols = b.getCols();
+        double[] values = b.getValues();
+
+        double sum = 0;
+        double weightsSum = 0;
+        for (int i = 0; i < values.length; i++) {
+            int dr = rows[i] - row;
+            int dc = cols[i] - col;
+            double w = 1.0 / (distPow(dr * dr + dc * dc, z) + eps);
+            sum += w * values[i];
+            weightsSum += w;
+        }
+        return sum / weightsSum;
+    }
+
+    /**
+     * returns d^z, where d is the euclidean distance, given as its square - d2.
+     * avoids Math.pow() and Math.sqrt() where possible, e.g d^4 = d2 * d2
+     * @param d2 the squared distance
+     * @param z the power
+     * @return d^z
+     */
+    public static double distPow(double d2, int z) {
+        switch (z) {
+            case 1: return Math.sqrt(d2);
+            case 2: return d2;
+            case 3: return d2 * Math.sqrt(d2);
+            case 4: return d2 * d2;
+            case 6: return d2 * d2 * d2;
+            case 8: double d4 = d2 * d2; return d4 * d4;
+            default: break;
+        }
+        if (z < 0) {
+            return Math.pow(Math.sqrt(d2), z);
+        }
+        double p = 1.0;
+        for (int i = 0; i < z / 2; i++) {
+            p *= d2;
+        }
+        return (z % 2 == 0) ? p : p * Math.sqrt(d2);
+    }
+
+    /**
+     * returns a fork/join pool with the given parallelism. pools are created once and shared across calls
+     * @param parallelism number of threads in the pool
+     * @return ForkJoinPool
+     */
+    public static synchronized ForkJoinPool getForkJoinPool(int parallelism) {
+        return pools.computeIfAbsent(parallelism, ForkJoinPool::new);
     }
 
     /**
@@ -32,51 +671,283 @@ public class Utils {
      * @param hole object contains information about boundaries and missing pixels of the hole
      */
     public static void fillHole(MatOfDouble m, Hole hole, BiFunction<Index, Index[], MatOfDouble> weightFunc) {
-        for (Index idx : hole.getMissingPixels()) {
-            MatOfDouble w = weightFunc.apply(idx, hole.getBoundariesPixels());
-            fillMissingPixel(m, hole.getBoundariesPixels(), idx, w);
+        Raster r = Raster.fromMat(m);
+        fillHole(r, hole, weightFunc);
+        r.copyTo(m);
+    }
+
+    /**
+     * fills the hole in the given raster, according to a given weights function, see BiFunctionWeightKernel
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     */
+    public static void fillHole(Raster r, Hole hole, BiFunction<Index, Index[], MatOfDouble> weightFunc) {
+        fillHole(r, hole, new BiFunctionWeightKernel(weightFunc), 1);
+    }
+
+    /**
+     * fills the hole in the given raster, according to algorithm in section 2 with the given weights function.
+     * the boundary pixels are gathered once, and the weights of all of them are evaluated in a single call to the
+     * kernel for every missing pixel. the default kernel (DefaultWeightKernel) runs through the fused loop of
+     * Utils.fillHole(Raster r, Hole hole, int z, double eps, int parallelism, boolean simd)
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param kernel the weights function, it must be safe to call from several threads if parallelism > 1
+     * @param parallelism number of threads to use, 1 or less means the sequential algorithm will run
+     */
+    public static void fillHole(Raster r, Hole hole, WeightKernel kernel, int parallelism) {
+        if (kernel instanceof DefaultWeightKernel) {
+            DefaultWeightKernel k = (DefaultWeightKernel) kernel;
+            fillHole(r, hole, k.getZ(), k.getEps(), parallelism, Defs.SIMD);
+            return;
         }
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+        BoundarySamples b = BoundarySamples.gather(r, hole.getPackedBoundariesPixels());
+        int[] rows = b.getRows();
+        int[] cols = b.getCols();
+        double[] values = b.getValues();
+
+        int chunks = (missing.length + Defs.PARALLEL_CHUNK_SIZE - 1) / Defs.PARALLEL_CHUNK_SIZE;
+        parallelFor(chunks, parallelism, k -> {
+            double[] w = new double[values.length];
+            for (int i = k * Defs.PARALLEL_CHUNK_SIZE; i < Math.min(missing.length,
+                    (k + 1) * Defs.PARALLEL_CHUNK_SIZE); i++) {
+                int row = Index.rowOf(missing[i]);
+                int col = Index.colOf(missing[i]);
+                kernel.weights(row, col, rows, cols, values.length, w);
+
+                double sum = 0;
+                double weightsSum = 0;
+                for (int j = 0; j < values.length; j++) {
+                    sum += values[j] * w[j];
+                    weightsSum += w[j];
+                }
+                r.set(row, col, sum / weightsSum);
+            }
+        });
     }
 
     /**
-     * receives a matrix representing an image and the locations of the pixels in the outmost perimeter
+     * see Utils.fillHoleCircular(Raster m, Index[] boundaries)
+     * @param m matrix representing an image
+     * @param boundaries locations of pixels in the outmost perimeter of the hole in the image
+     */
+    public static void fillHoleCircular(MatOfDouble m, Index[] boundaries) {
+        Raster r = Raster.fromMat(m);
+        fillHoleCircular(r, boundaries);
+        r.copyTo(m);
+    }
+
+    /**
+     * receives a raster representing an image and the locations of the pixels in the outmost perimeter
      * of the hole in the image.
      *
      * this is the algorithm which is required in section 5
      * approximates the algorithm from section 2 by filling perimeter by perimeter of the hole,
      * from the outmost and inner.
-     * @param m matrix representing an image
+     * @param m raster representing an image
      * @param boundaries locations of pixels in the outmost perimeter of the hole in the image
      */
-    public static void fillHoleCircular(MatOfDouble m, Index[] boundaries) {
-        Index[] currPerimeter = boundaries;
-        HashSet<Index> nextPerimeter; // (set is needed to prevent duplicates)
-        Neighborhood n;
+    public static void fillHoleCircular(Raster m, Index[] boundaries) {
+        fillHoleCircular(m, Index.pack(boundaries));
+    }
+
+    /**
+     * the pixels of a working raster which the perimeter loop of Utils.fillHoleCircular() reads and writes, so the
+     * same loop runs on every precision of the raster
+     */
+    private interface CircularFillRaster {
+
+        boolean contains(int row, int col);
+
+        boolean isMissing(int row, int col);
+
+        /**
+         * sets the pixel to the average of the given pixels
+         * @param row row of the pixel
+         * @param col col of the pixel
+         * @param pixels packed locations of the pixels to average, see Index.pack()
+         * @param n number of pixels to average, from the start of pixels
+         */
+        void setAverage(int row, int col, long[] pixels, int n);
+    }
+
+    /**
+     * see Utils.fillHoleCircular(Raster m, Index[] boundaries)
+     * @param m raster representing an image
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    public static void fillHoleCircular(Raster m, long[] boundaries) {
+        fillHoleCircular(new CircularFillRaster() {
+            @Override
+            public boolean contains(int row, int col) {
+                return m.contains(row, col);
+            }
+
+            @Override
+            public boolean isMissing(int row, int col) {
+                return m.get(row, col) == Defs.HOLE_VALUE;
+            }
+
+            @Override
+            public void setAverage(int row, int col, long[] pixels, int n) {
+                m.set(row, col, matAvrg(m, pixels, n));
+            }
+        }, boundaries);
+    }
+
+    /**
+     * see Utils.fillHoleCircular(Raster m, Index[] boundaries), in single precision
+     * @param m raster representing an image
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    public static void fillHoleCircular(FloatRaster m, long[] boundaries) {
+        fillHoleCircular(new CircularFillRaster() {
+            @Override
+            public boolean contains(int row, int col) {
+                return m.contains(row, col);
+            }
+
+            @Override
+            public boolean isMissing(int row, int col) {
+                return m.get(row, col) == Defs.HOLE_VALUE;
+            }
+
+            @Override
+            public void setAverage(int row, int col, long[] pixels, int n) {
+                float sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += m.get(Index.rowOf(pixels[i]), Index.colOf(pixels[i]));
+                }
+                m.set(row, col, sum / n);
+            }
+        }, boundaries);
+    }
+
+    /**
+     * see Utils.fillHoleCircular(Raster m, Index[] boundaries), in fixed point: the neighboring pixels are summed
+     * as integers, and the average is rounded to the nearest fixed point value
+     * @param m raster representing an image
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    public static void fillHoleCircular(FixedRaster m, long[] boundaries) {
+        fillHoleCircular(new CircularFillRaster() {
+            @Override
+            public boolean contains(int row, int col) {
+                return m.contains(row, col);
+            }
+
+            @Override
+            public boolean isMissing(int row, int col) {
+                return m.get(row, col) == FixedRaster.HOLE_VALUE;
+            }
+
+            @Override
+            public void setAverage(int row, int col, long[] pixels, int n) {
+                // at most 8 pixels of at most 255 * FixedRaster.ONE, so the sum can't overflow
+                int sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += m.get(Index.rowOf(pixels[i]), Index.colOf(pixels[i]));
+                }
+                m.set(row, col, (sum + n / 2) / n);
+            }
+        }, boundaries);
+    }
+
+    /**
+     * see Utils.fillHoleCircular(Raster m, Index[] boundaries), fills all the channels of a multi channel raster
+     * in the same pass, every neighborhood is checked once for all of them
+     * @param m raster representing an image
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    public static void fillHoleCircular(ColorRaster m, long[] boundaries) {
+        fillHoleCircular(m, m.getChannel(0), boundaries);
+    }
+
+    /**
+     * see Utils.fillHoleCircular(ColorRaster m, long[] boundaries)
+     * @param m raster representing an image
+     * @param guide copy of the first channel of m, which is used to check which pixels are still missing,
+     *              it's updated together with m
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    static void fillHoleCircular(ColorRaster m, Raster guide, long[] boundaries) {
+        int channels = m.getChannels();
+        fillHoleCircular(new CircularFillRaster() {
+            @Override
+            public boolean contains(int row, int col) {
+                return guide.contains(row, col);
+            }
+
+            @Override
+            public boolean isMissing(int row, int col) {
+                return guide.get(row, col) == Defs.HOLE_VALUE;
+            }
+
+            @Override
+            public void setAverage(int row, int col, long[] pixels, int n) {
+                for (int ch = 0; ch < channels; ch++) {
+                    double sum = 0;
+                    for (int i = 0; i < n; i++) {
+                        sum += m.get(Index.rowOf(pixels[i]), Index.colOf(pixels[i]), ch);
+                    }
+                    m.set(row, col, ch, sum / n);
+                }
+                guide.set(row, col, m.get(row, col, 0));
+            }
+        }, boundaries);
+    }
+
+    /**
+     * the perimeter loop of all the versions of Utils.fillHoleCircular()
+     * @param m raster representing an image
+     * @param boundaries packed locations (see Index.pack()) of pixels in the outmost perimeter of the hole
+     */
+    private static void fillHoleCircular(CircularFillRaster m, long[] boundaries) {
+        long[] currPerimeter = boundaries;
+        PixelSet nextPerimeter = new PixelSet(boundaries.length); // (set is needed to prevent duplicates)
+        Neighborhood n = new Neighborhood();
 
         boolean pixelsLeft = currPerimeter.length > 0;
 
         // while there is still an inner perimeter, keep updating it to be the next one, and fill all it's pixels
         // according to the previous already filled ones (or the boarder pixels for the outmost perimeter)
         while (pixelsLeft) {
-            nextPerimeter = new HashSet<>();
-            for (Index p: currPerimeter) {
-                n = checkNeighborhood(m, p);
+            nextPerimeter.clear();
+            for (long p: currPerimeter) {
+                checkNeighborhood(m, p, n);
 
                 // fill the current checked perimeter pixel
                 // average of the pixels is used for simplification, because using weights function
                 // didn't seem to make any difference make
-                m.put(p.getRow(), p.getCol(), matAvrg(m, n.getImgPixels()));
+                m.setAverage(Index.rowOf(p), Index.colOf(p), n.getPackedImgPixels(), n.getImgCount());
 
                 // add relevant pixels to the next inner perimeter
-                nextPerimeter.addAll(Arrays.asList(n.getMissingPixels()));
+                for (int i = 0; i < n.getMissingCount(); i++) {
+                    nextPerimeter.add(n.getPackedMissingPixels()[i]);
+                }
             }
 
             // update inner perimeter to be the current one iterated
-            currPerimeter = nextPerimeter.toArray(new Index[nextPerimeter.size()]);
+            currPerimeter = nextPerimeter.toArray();
             pixelsLeft = currPerimeter.length > 0;
         }
     }
 
+    /**
+     * a deterministic version of Utils.fillHoleCircular(), in which every perimeter is filled only from the outer
+     * perimeters, in parallel, see WavefrontFill
+     * @param m raster representing an image
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param parallelism number of threads to use
+     */
+    public static void fillHoleCircularWavefront(Raster m, Hole hole, int parallelism) {
+        WavefrontFill.fillHole(m, hole, parallelism);
+    }
+
     /**
      * @return a map which represents directions in 4-connectivity, clockwise
      */
@@ -95,9 +966,18 @@ public class Utils {
      * @param pixels ArrayList to add the found pixel to
      */
     public static void addFirstMissingPixel(MatOfDouble m, ArrayList<Index> pixels) {
-        outer: for (int i = 0; i < m.rows(); i++) {
-            for (int j = 0; j < m.cols(); j++) {
-                if (m.get(i, j)[0] == Defs.HOLE_VALUE) {
+        addFirstMissingPixel(Raster.fromMat(m), pixels);
+    }
+
+    /**
+     * adds the first pixel of the hole in m to pixels ArrayList, if such hole exist
+     * @param m raster representing an image
+     * @param pixels ArrayList to add the found pixel to
+     */
+    public static void addFirstMissingPixel(Raster m, ArrayList<Index> pixels) {
+        outer: for (int i = 0; i < m.getHeight(); i++) {
+            for (int j = 0; j < m.getWidth(); j++) {
+                if (m.get(i, j) == Defs.HOLE_VALUE) {
                     pixels.add(new Index(i, j));
                     break outer;
                 }
@@ -106,26 +986,54 @@ public class Utils {
     }
 
     /**
-     * Follows the perimeter of a hole in the matrix and returns the boarder as an array of Index objects
+     * see Utils.followHolePerimeter(Raster m)
+     * @param m matrix represents the image
+     * @return Index[]
+     */
+    public static Index[] followHolePerimeter(MatOfDouble m) {
+        return followHolePerimeter(Raster.fromMat(m));
+    }
+
+    /**
+     * Follows the perimeter of a hole in the raster and returns the boarder as an array of Index objects
      *
-     * In opposed to the method Utils.findHole(Mat m), here, the perimeter pixels will be ordered in a
+     * In opposed to the method Utils.findHole(Raster m), here, the perimeter pixels will be ordered in a
      * "topological way", one after the other.
      *
      * This method is used to get the hole's perimeter for Utils.fillHoleCircular()
-     * @param m matrix represents the image
+     * @param m raster represents the image
      * @return Index[]
      */
-    public static Index[] followHolePerimeter(MatOfDouble m) {
+    public static Index[] followHolePerimeter(Raster m) {
         // find the first pixel of the hole
         ArrayList<Index> perimeter = new ArrayList<>();
         addFirstMissingPixel(m, perimeter);
         if (perimeter.size() == 0) {
             return new Index[0];
         }
+        return followHolePerimeter(m, perimeter.get(0));
+    }
+
+    /**
+     * same as Utils.followHolePerimeter(Raster m), for the hole which starts at the given pixel
+     * @param m raster represents the image
+     * @param start the first missing pixel of the hole, in rows order (the top most, and then left most)
+     * @return Index[]
+     */
+    public static Index[] followHolePerimeter(Raster m, Index start) {
+        ArrayList<Index> perimeter = new ArrayList<>();
+        perimeter.add(start);
 
         // define directions, in 4-connectivity, clockwise
         Map<Integer, int[]> directions = getDirectionsMap();
 
+        // the pixels which were entered in every direction, entering a pixel in the same direction twice means
+        // the following went into a loop which doesn't pass through the first pixel
+        PixelSet[] entered = new PixelSet[4];
+        for (int i = 0; i < entered.length; i++) {
+            entered[i] = new PixelSet();
+        }
+
         // start following the perimeter
         int dir = 0;
         Index first = perimeter.get(0);
@@ -137,24 +1045,63 @@ public class Utils {
 
             // for the current pixel, find a neighbor which is the next one on the perimeter
             neighborFound = false;
-            while (!neighborFound) {
+            for (int tries = 0; tries < 4 && !neighborFound; tries++) {
                 int[] currDirection = directions.get(dir);
                 next = new Index(curr.getRow() + currDirection[0], curr.getCol() + currDirection[1]);
-                if (m.get(next.getRow(), next.getCol())[0] == Defs.HOLE_VALUE) { // found
-                    perimeter.add(next);
+                if (m.contains(next.getRow(), next.getCol()) &&
+                        m.get(next.getRow(), next.getCol()) == Defs.HOLE_VALUE) { // found
                     neighborFound = true;
                 } else { // not found yet, go to next direction
                     dir = (dir + 3) % 4;
                 }
             }
+            if (!neighborFound) { // a single pixel, with no missing pixel in 4-connectivity
+                return new Index[] {start};
+            }
+            if (!entered[dir].add(next.getRow(), next.getCol())) {
+                break;
+            }
+            perimeter.add(next);
             curr = next; // after next perimeter pixel found, make it current, and keep following
         }
+        if (curr.getRow() != first.getRow() || curr.getCol() != first.getCol()) {
+            // the loop was stopped, there is no last pixel which is identical to the first
+            return perimeter.toArray(new Index[perimeter.size()]);
+        }
 
         // remove the last pixel, which is identical to the first, and return result
         perimeter.remove(perimeter.get(perimeter.size() - 1));
         return perimeter.toArray(new Index[perimeter.size()]);
     }
 
+    /**
+     * returns the missing pixels of the hole which touch its boundaries (in 8-connectivity), in rows order.
+     * these are the outmost perimeter of the hole for Utils.fillHoleCircular(). in opposed to
+     * Utils.followHolePerimeter(), any hole has one, of any shape and anywhere in the image, and the
+     * perimeters of holes inside the hole are included as well
+     * @param m raster represents the image
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @return packed locations, see Index.pack()
+     */
+    public static long[] getOuterPerimeter(Raster m, Hole hole) {
+        long[] missing = hole.getPackedMissingPixels();
+        long[] perimeter = new long[missing.length];
+        int n = 0;
+        for (long p: missing) {
+            int r = Index.rowOf(p);
+            int c = Index.colOf(p);
+            for (int[] neighbor: Defs.clockWise) {
+                int nRow = r + neighbor[0];
+                int nCol = c + neighbor[1];
+                if (m.contains(nRow, nCol) && m.get(nRow, nCol) != Defs.HOLE_VALUE) {
+                    perimeter[n++] = p;
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(perimeter, n);
+    }
+
     /**
      * returns the average of the pixels of m, which are specified in the locations in idxs
      *
@@ -173,15 +1120,32 @@ public class Utils {
     }
 
     /**
-     * uses the method below - getPixelFilling() and puts the needed value in the missing matrix pixel location
-     * @param m the matrix to be manipulated
-     * @param rangePositions see function below
-     * @param missingIdx location of the current filled missing pixel
-     * @param weights the weights function as an OpenCv MatOfDouble object
+     * see Utils.matAvrg(MatOfDouble m, Index[] idxs)
+     * @param m
+     * @param idxs
+     * @return
+     */
+    public static double matAvrg(Raster m, Index[] idxs) {
+        double sum = 0;
+        for (Index idx: idxs) {
+            sum += m.get(idx.getRow(), idx.getCol());
+        }
+        return sum / idxs.length;
+    }
+
+    /**
+     * see Utils.matAvrg(MatOfDouble m, Index[] idxs)
+     * @param m
+     * @param idxs packed locations, see Index.pack()
+     * @param n number of locations to consider, from the start of idxs
+     * @return
      */
-    private static void fillMissingPixel(MatOfDouble m, Index[] rangePositions, Index missingIdx, MatOfDouble weights) {
-        double p = getPixelFilling(m, rangePositions, weights);
-        m.put(missingIdx.getRow(), missingIdx.getCol(), p);
+    public static double matAvrg(Raster m, long[] idxs, int n) {
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += m.get(Index.rowOf(idxs[i]), Index.colOf(idxs[i]));
+        }
+        return sum / n;
     }
 
     /**
@@ -202,35 +1166,19 @@ public class Utils {
     }
 
     /**
-     * returns the weights function described in section 2 of task description
-     * @param pixelIdx location of the missing pixel
-     * @param boundaries array of locations of pixels which are in the boundary of the hole
-     * @param z configurable argument as specifies in the task description
-     * @param eps configurable argument as specifies in the task description
-     * @return
+     * see Utils.getPixelFilling(MatOfDouble m, Index[] rangePositions, MatOfDouble weights)
+     * @param m raster to be manipulated
+     * @param rangePositions the pixels which are considered in the weights function
+     * @param weights the weights function, one weight per position in rangePositions
      */
-    private static MatOfDouble getDefaultWeights(Index pixelIdx, Index[] boundaries, int z, double eps) {
-        MatOfDouble w = new MatOfDouble(new Mat(boundaries.length, 1, CV_64FC1));
-        for (int i = 0; i < boundaries.length; i++){
-            double d = Utils.dist(pixelIdx, boundaries[i]);
-            d = Math.pow(d, z) + eps;
-            w.put(i, 0, 1.0 / d);
+    public static double getPixelFilling(Raster m, Index[] rangePositions, double[] weights) {
+        double sum = 0;
+        double weightsSum = 0;
+        for (int i = 0; i < rangePositions.length; i++) {
+            sum += m.get(rangePositions[i].getRow(), rangePositions[i].getCol()) * weights[i];
+            weightsSum += weights[i];
         }
-        return w;
-    }
-
-    /**
-     * a function which expresses the distance between two elements in a 2-dim array, based on euclidean distance
-     * @param idx1
-     * @param idx2
-     * @return
-     */
-    private static double dist(Index idx1, Index idx2) {
-        int y1 = idx1.getRow();
-        int x1 = idx1.getCol();
-        int y2 = idx2.getRow();
-        int x2 = idx2.getCol();
-        return Math.sqrt(Math.pow(x1 - x2, 2) + Math.pow(y1 - y2, 2));
+        return sum / weightsSum;
     }
 
     /**
@@ -239,20 +1187,48 @@ public class Utils {
      * @return Hole object
      */
     public static Hole findHole(Mat m) {
-        ArrayList<Index> holeArrayList = new ArrayList<>();
-        HashSet<Index> boundariesSet = new HashSet<>(); // set because it's needed to prevent duplicates
+        return findHole(Raster.fromMat(m));
+    }
 
-        for (int i = 0; i < m.rows(); i++) {
-            for (int j = 0; j < m.cols(); j++) {
-                checkMissingPixel(i, j, m, holeArrayList);
-                checkBoundaryPixel(i, j, m, boundariesSet);
-            }
-        }
+    /**
+     * returns a Hole object for every connected component of missing pixels in the given raster,
+     * see HoleMask.findHoles()
+     * @param m raster which is to be inspected for holes
+     * @return list of Hole objects
+     */
+    public static List<Hole> findHoles(Raster m) {
+        return findHoles(m, 1);
+    }
 
-        Index[] hole = holeArrayList.toArray(new Index[holeArrayList.size()]);
-        Index[] boundaries = boundariesSet.toArray(new Index[boundariesSet.size()]);
+    /**
+     * see Utils.findHoles(Raster m), runs with the given number of threads
+     * @param m raster which is to be inspected for holes
+     * @param parallelism number of threads to use
+     * @return list of Hole objects
+     */
+    public static List<Hole> findHoles(Raster m, int parallelism) {
+        return HoleMask.fromRaster(m, parallelism).findHoles(parallelism);
+    }
+
+    /**
+     * see Utils.findHoles(Raster m), a pixel of a multi channel raster is missing if its first channel is
+     * @param m raster which is to be inspected for holes
+     * @param parallelism number of threads to use
+     * @return list of Hole objects
+     */
+    public static List<Hole> findHoles(ColorRaster m, int parallelism) {
+        return findHoles(m.getChannel(0), parallelism);
+    }
 
-        return new Hole(hole, boundaries);
+    /**
+     * returns a Hole object, based on the missing pixels in the given raster
+     * @param m raster which is to be inspected for a hole
+     * @return Hole object
+     */
+    public static Hole findHole(Raster m) {
+        // the missing pixels are extracted to a bitmask in a single pass, and the boundaries are derived from it
+        // only inside the bounding box of the hole, see HoleMask
+        return HoleMask.fromRaster(m).toHole();
     }
 
     /**
@@ -280,53 +1256,72 @@ public class Utils {
     }
 
     /**
-     * if the matrix's pixel in the given location is missing pixel of a hole,
-     * it is added to the missing pixels arrayList
+     * see Utils.checkBoundaryPixel(int i, int j, Mat m, HashSet<Index> boundariesPixels)
+     * here the pixels are added to the set as packed locations, see Index.pack()
      * @param i row of pixel to be checked
      * @param j col of pixel to be checked
-     * @param m matrix to be checked
-     * @param missingPixels the set to which the pixel will be added in case it's indeed missing
+     * @param m raster to be checked
+     * @param boundariesPixels the set to which the pixel will be added in case it's indeed on the boundary
      */
-    private static void checkMissingPixel(int i, int j, Mat m, ArrayList<Index> missingPixels) {
-        if (m.get(i, j)[0] == Defs.HOLE_VALUE) {
-            missingPixels.add(new Index(i, j));
+    public static void checkBoundaryPixel(int i, int j, Raster m, PixelSet boundariesPixels) {
+        int jPrev = (j > 0) ? j - 1 : j;
+        int iPrev = (i > 0) ? i - 1 : i;
+
+        double p = m.get(i, j);
+        double left = m.get(i, jPrev);
+        double up = m.get(iPrev, j);
+
+        if (left != Defs.HOLE_VALUE && p == Defs.HOLE_VALUE) {
+            boundariesPixels.add(i, jPrev);
+        } else if (left == Defs.HOLE_VALUE && p != Defs.HOLE_VALUE) {
+            boundariesPixels.add(i, j);
+        }
+        if (up != Defs.HOLE_VALUE && p == Defs.HOLE_VALUE) {
+            boundariesPixels.add(iPrev, j);
+        } else if (up == Defs.HOLE_VALUE && p != Defs.HOLE_VALUE) {
+            boundariesPixels.add(i, j);
         }
     }
 
     /**
-     * checks the neighboring pixels to the given index in m, and returns a Neighborhood object
-     * in which all neighbors divided to missing pixels (in the hole), and existing pixels
-     * @param m the matrix to be checked
-     * @param idx index of pixel to be checked
-     * @return Neighborhood objetc
+     * checks the neighboring pixels to the given pixel in m, and sets them in the given Neighborhood object,
+     * divided to missing pixels (in the hole), and existing pixels
+     * @param m the raster to be checked
+     * @param p packed location of pixel to be checked, see Index.pack()
+     * @param n Neighborhood object to set, its previous pixels are cleared
      */
-    private static Neighborhood checkNeighborhood(MatOfDouble m, Index idx) {
-        int r = idx.getRow();
-        int c = idx.getCol();
+    private static void checkNeighborhood(CircularFillRaster m, long p, Neighborhood n) {
+        int r = Index.rowOf(p);
+        int c = Index.colOf(p);
 
-        ArrayList<Index> nMissing = new ArrayList<>();
-        ArrayList<Index> nImg = new ArrayList<>();
+        n.clear();
         for (int[] neighbor: Defs.clockWise) {
             int rowDir = neighbor[0];
             int colDir = neighbor[1];
 
             int nRow = r + rowDir;
             int nCol = c + colDir;
-            if (nRow >= 0 && nRow < m.rows() && nCol >= 0 && nCol < m.cols()) {
-                Index nIdx = new Index(nRow, nCol);
-                double p = m.get(nRow, nCol)[0];
-                if (p == Defs.HOLE_VALUE) {
-                    nMissing.add(nIdx);
+            if (m.contains(nRow, nCol)) {
+                if (m.isMissing(nRow, nCol)) {
+                    n.addMissingPixel(Index.pack(nRow, nCol));
                 } else {
-                    nImg.add(nIdx);
+                    n.addImgPixel(Index.pack(nRow, nCol));
                 }
             }
         }
+    }
 
-        Index[] nMissingArray = nMissing.toArray(new Index[nMissing.size()]);
-        Index[] nImgArray = nImg.toArray(new Index[nImg.size()]);
-
-        return new Neighborhood(nMissingArray, nImgArray);
+    /**
+     * given anm array of locations of pixels which are in the boundaries of a hole,
+     * sets a line in this boundary in the raster (to visualize the hole's boundaries)
+     * @param m raster to be manipulated
+     * @param boundariesPixels
+     * @param color
+     */
+    public static void setVisualBoundaries(Raster m, Index[] boundariesPixels, double color) {
+        for (Index idx: boundariesPixels) {
+            m.set(idx.getRow(), idx.getCol(), color);
+        }
     }
 
     /**
@@ -342,6 +1337,116 @@ public class Utils {
         }
     }
 
+    /**
+     * converts an image to a grayscale raster, in a single pass over its pixels.
+     *
+     * the same as HoleFiller's loading with OpenCv: the bytes of every pixel, in the order they are held in memory,
+     * are converted with OpenCv's COLOR_RGB2GRAY formula and its fixed point rounding. (for the usual TYPE_3BYTE_BGR
+     * images the first byte is blue, this is kept as is so the results are the same as before)
+     * @param img the image to convert
+     * @return Raster of the grayscale image, with values in [0, 255]
+     */
+    public static Raster toGray(BufferedImage img) {
+        int h = img.getHeight();
+        int w = img.getWidth();
+        Raster r = new Raster(h, w);
+        double[] data = r.getData();
+
+        if (img.getRaster().getDataBuffer() instanceof DataBufferByte
+                && img.getSampleModel() instanceof ComponentSampleModel
+                && (img.getSampleModel().getNumBands() == 3 || img.getSampleModel().getNumBands() == 1)) {
+            ComponentSampleModel sm = (ComponentSampleModel) img.getSampleModel();
+            DataBufferByte db = (DataBufferByte) img.getRaster().getDataBuffer();
+            byte[] bytes = db.getData();
+            int pixelStride = sm.getPixelStride();
+            int scanlineStride = sm.getScanlineStride();
+            int first = db.getOffset() - img.getRaster().getSampleModelTranslateY() * scanlineStride
+                    - img.getRaster().getSampleModelTranslateX() * pixelStride;
+            int firstByte = Arrays.stream(sm.getBandOffsets()).min().getAsInt();
+            for (int i = 0; i < h; i++) {
+                int p = first + i * scanlineStride + firstByte;
+                for (int j = 0; j < w; j++, p += pixelStride) {
+                    data[i * w + j] = (pixelStride == 1) ? (bytes[p] & 0xff)
+                            : toGray(bytes[p] & 0xff, bytes[p + 1] & 0xff, bytes[p + 2] & 0xff);
+                }
+            }
+        } else {
+            for (int i = 0; i < h; i++) {
+                for (int j = 0; j < w; j++) {
+                    int rgb = img.getRGB(j, i);
+                    data[i * w + j] = toGray(rgb & 0xff, (rgb >> 8) & 0xff, (rgb >> 16) & 0xff);
+                }
+            }
+        }
+        return r;
+    }
+
+    /**
+     * OpenCv's COLOR_RGB2GRAY conversion of a single pixel, with the same fixed point arithmetic
+     * @param c0 the channel which is treated as red
+     * @param c1 green
+     * @param c2 the channel which is treated as blue
+     * @return gray value in [0, 255]
+     */
+    public static int toGray(int c0, int c1, int c2) {
+        return (c0 * 4899 + c1 * 9617 + c2 * 1868 + (1 << 13)) >> 14;
+    }
+
+    /**
+     * converts a raster to bytes (row-major), the same as OpenCv's Mat.convertTo(CV_8UC1): values are rounded to
+     * the nearest integer (ties to even) and saturated to [0, 255]
+     * @param r raster to convert
+     * @return byte[] of the raster's values
+     */
+    public static byte[] toBytes(Raster r) {
+        return toBytes(r, new byte[r.getHeight() * r.getWidth()]);
+    }
+
+    /**
+     * see Utils.toBytes(Raster r), writes the bytes to the given array instead of allocating a new one
+     * @param r the raster
+     * @param bytes array of at least r.getHeight() * r.getWidth() bytes
+     * @return bytes
+     */
+    public static byte[] toBytes(Raster r, byte[] bytes) {
+        for (int i = 0; i < r.getHeight(); i++) {
+            for (int j = 0; j < r.getWidth(); j++) {
+                double v = Math.rint(r.get(i, j));
+                bytes[i * r.getWidth() + j] = (byte) (v < 0 ? 0 : (v > 255 ? 255 : (int) v));
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * encodes the image to the given type and writes it to the file. in case metrics are recorded, the image is
+     * encoded in memory, and then written, so the two phases are measured separately, see Metrics. otherwise it's
+     * encoded straight to the file
+     * @param img the image
+     * @param type the image type (format name), e.g jpg
+     * @param output the file to write
+     * @throws IOException in case there is no writer for the type, or the file can't be written
+     */
+    public static void writeImg(BufferedImage img, String type, File output) throws IOException {
+        if (!Defs.METRICS.isEnabled()) {
+            if (!ImageIO.write(img, type, output)) {
+                throw new IOException("no writer for image type " + type);
+            }
+            return;
+        }
+
+        long start = Defs.METRICS.startTime();
+        ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+        if (!ImageIO.write(img, type, encoded)) {
+            throw new IOException("no writer for image type " + type);
+        }
+        Defs.METRICS.addTime(Metrics.ENCODE, start);
+
+        start = Defs.METRICS.startTime();
+        Files.write(output.toPath(), encoded.toByteArray());
+        Defs.METRICS.addTime(Metrics.WRITE, start);
+    }
+
     /**
      * given a matrix object, given as OpenCv Mat object, returns a BufferredImage object which holds the image
      * @param m the matrix representing the image
@@ -0,0 +1,128 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD version of the section 2 weighting loop, based on the (incubating) java Vector API.
+ * every step evaluates a full vector of boundary pixels - the distances, the weights, and their contribution
+ * to the weighted sum, and the remaining pixels are handled by the scalar code.
+ *
+ * the module jdk.incubator.vector must be available at compile time and at runtime (--add-modules
+ * jdk.incubator.vector), so the build skips this class when the JDK hasn't the module, and Utils loads it by
+ * reflection only when it's available, see Utils.isVectorApiAvailable().
+ * the sums are accumulated per lane, so the result may differ from the scalar one in the last bits
+ */
+public class VectorFill implements SimdFill {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    // twice the lanes of SPECIES, used by the single precision loop
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public double getPixelFilling(BoundarySamples b, int row, int col, int z, double eps) {
+        double[] rows = b.getRowsAsDoubles();
+        double[] cols = b.getColsAsDoubles();
+        double[] values = b.getValues();
+
+        DoubleVector sumV = DoubleVector.zero(SPECIES);
+        DoubleVector weightsSumV = DoubleVector.zero(SPECIES);
+        int i = 0;
+        int upperBound = SPECIES.loopBound(values.length);
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector dr = DoubleVector.fromArray(SPECIES, rows, i).sub(row);
+            DoubleVector dc = DoubleVector.fromArray(SPECIES, cols, i).sub(col);
+            DoubleVector d2 = dr.mul(dr).add(dc.mul(dc));
+            DoubleVector w = DoubleVector.broadcast(SPECIES, 1.0).div(distPow(d2, z).add(eps));
+            sumV = sumV.add(w.mul(DoubleVector.fromArray(SPECIES, values, i)));
+            weightsSumV = weightsSumV.add(w);
+        }
+
+        double sum = sumV.reduceLanes(VectorOperators.ADD);
+        double weightsSum = weightsSumV.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            double dr = rows[i] - row;
+            double dc = cols[i] - col;
+            double w = 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+            sum += w * values[i];
+            weightsSum += w;
+        }
+        return sum / weightsSum;
+    }
+
+    @Override
+    public float getPixelFillingFloat(BoundarySamples b, int row, int col, int z, float eps) {
+        float[] rows = b.getRowsAsFloats();
+        float[] cols = b.getColsAsFloats();
+        float[] values = b.getValuesAsFloats();
+
+        FloatVector sumV = FloatVector.zero(FLOAT_SPECIES);
+        FloatVector weightsSumV = FloatVector.zero(FLOAT_SPECIES);
+        int i = 0;
+        int upperBound = FLOAT_SPECIES.loopBound(values.length);
+        for (; i < upperBound; i += FLOAT_SPECIES.length()) {
+            FloatVector dr = FloatVector.fromArray(FLOAT_SPECIES, rows, i).sub(row);
+            FloatVector dc = FloatVector.fromArray(FLOAT_SPECIES, cols, i).sub(col);
+            FloatVector d2 = dr.mul(dr).add(dc.mul(dc));
+            FloatVector w = FloatVector.broadcast(FLOAT_SPECIES, 1f).div(distPow(d2, z).add(eps));
+            sumV = sumV.add(w.mul(FloatVector.fromArray(FLOAT_SPECIES, values, i)));
+            weightsSumV = weightsSumV.add(w);
+        }
+
+        float sum = sumV.reduceLanes(VectorOperators.ADD);
+        float weightsSum = weightsSumV.reduceLanes(VectorOperators.ADD);
+        for (; i < values.length; i++) {
+            float dr = rows[i] - row;
+            float dc = cols[i] - col;
+            float w = 1f / ((float) Utils.distPow(dr * dr + dc * dc, z) + eps);
+            sum += w * values[i];
+            weightsSum += w;
+        }
+        return sum / weightsSum;
+    }
+
+    /**
+     * vectorized Utils.distPow(), in single precision
+     */
+    private static FloatVector distPow(FloatVector d2, int z) {
+        switch (z) {
+            case 1: return d2.sqrt();
+            case 2: return d2;
+            case 3: return d2.mul(d2.sqrt());
+            case 4: return d2.mul(d2);
+            default: break;
+        }
+        if (z < 0) {
+            return d2.sqrt().pow(z);
+        }
+        FloatVector p = FloatVector.broadcast(FLOAT_SPECIES, 1f);
+        for (int i = 0; i < z / 2; i++) {
+            p = p.mul(d2);
+        }
+        return (z % 2 == 0) ? p : p.mul(d2.sqrt());
+    }
+
+    /**
+     * vectorized Utils.distPow()
+     * @param d2 the squared distances
+     * @param z the power
+     * @return d^z for every lane
+     */
+    private static DoubleVector distPow(DoubleVector d2, int z) {
+        switch (z) {
+            case 1: return d2.sqrt();
+            case 2: return d2;
+            case 3: return d2.mul(d2.sqrt());
+            case 4: return d2.mul(d2);
+            default: break;
+        }
+        if (z < 0) {
+            return d2.sqrt().pow(z);
+        }
+        DoubleVector p = DoubleVector.broadcast(SPECIES, 1.0);
+        for (int i = 0; i < z / 2; i++) {
+            p = p.mul(d2);
+        }
+        return (z % 2 == 0) ? p : p.mul(d2.sqrt());
+    }
+}
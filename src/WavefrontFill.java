@@ -0,0 +1,131 @@
+/**
+ * a deterministic, parallel version of the approximating algorithm of section 5 (Utils.fillHoleCircular()).
+ *
+ * the perimeters ("rings") of the hole are calculated up front, with a distance transform of the hole
+ * (chessboard distance, i.e 8-connectivity, from the nearest pixel which isn't missing). ring k is the set of missing
+ * pixels in distance k, and each of its pixels is filled with the average of its neighbors from rings smaller than k.
+ *
+ * so, in opposed to Utils.fillHoleCircular(), a pixel never reads a pixel of its own ring: the values of a ring
+ * are calculated into a separate buffer, from the already filled rings only, and written to the raster after the
+ * whole ring was calculated. the result doesn't depend on the order of the pixels, and every ring is filled
+ * in parallel
+ */
+public class WavefrontFill {
+    private static final int INF = Integer.MAX_VALUE / 2;
+
+    /**
+     * fills the hole in the given raster, see class description
+     * @param r raster to fill
+     * @param hole object contains information about boundaries and missing pixels of the hole
+     * @param parallelism number of threads to fill every ring with
+     */
+    public static void fillHole(Raster r, Hole hole, int parallelism) {
+        long[] missing = hole.getPackedMissingPixels();
+        if (missing.length == 0) {
+            return;
+        }
+
+        // the bounding box of the hole contains its boundaries, so it contains all the neighbors of its pixels
+        int top = hole.getMinRow();
+        int left = hole.getMinCol();
+        int h = hole.getMaxRow() - top + 1;
+        int w = hole.getMaxCol() - left + 1;
+        int[] ring = getRings(missing, top, left, h, w);
+
+        // sort the missing pixels by their ring (counting sort)
+        int rings = 0;
+        for (long p: missing) {
+            rings = Math.max(rings, ring[(Index.rowOf(p) - top) * w + Index.colOf(p) - left]);
+        }
+        int[] ringStart = new int[rings + 2];
+        for (long p: missing) {
+            ringStart[ring[(Index.rowOf(p) - top) * w + Index.colOf(p) - left] + 1]++;
+        }
+        for (int k = 1; k < ringStart.length; k++) {
+            ringStart[k] += ringStart[k - 1];
+        }
+        long[] byRing = new long[missing.length];
+        int[] next = ringStart.clone();
+        for (long p: missing) {
+            byRing[next[ring[(Index.rowOf(p) - top) * w + Index.colOf(p) - left]]++] = p;
+        }
+
+        double[] values = new double[missing.length];
+        for (int k = 1; k <= rings; k++) {
+            final int currRing = k;
+            final int from = ringStart[k];
+            Utils.parallelFor(ringStart[k + 1] - from, parallelism, i ->
+                    values[from + i] = getPixelFilling(r, ring, top, left, w, h, byRing[from + i], currRing));
+            for (int i = from; i < ringStart[k + 1]; i++) {
+                r.set(Index.rowOf(byRing[i]), Index.colOf(byRing[i]), values[i]);
+            }
+        }
+    }
+
+    /**
+     * @return the average of the neighbors of the given pixel, which are in rings smaller than the pixel's ring
+     */
+    private static double getPixelFilling(Raster r, int[] ring, int top, int left, int w, int h, long p, int k) {
+        int row = Index.rowOf(p) - top;
+        int col = Index.colOf(p) - left;
+        double sum = 0;
+        int n = 0;
+        for (int[] neighbor: Defs.clockWise) {
+            int nRow = row + neighbor[0];
+            int nCol = col + neighbor[1];
+            if (nRow >= 0 && nRow < h && nCol >= 0 && nCol < w && ring[nRow * w + nCol] < k) {
+                sum += r.get(nRow + top, nCol + left);
+                n++;
+            }
+        }
+        return sum / n;
+    }
+
+    /**
+     * calculates the ring of every pixel in the h x w box which starts at (top, left): 0 for pixels which aren't
+     * missing, and the chessboard distance from the nearest such pixel for the missing ones.
+     * two passes of a distance transform - forward, and then backward
+     * @param missing packed locations of the missing pixels, see Index.pack()
+     * @return the rings, row-major over the box
+     */
+    public static int[] getRings(long[] missing, int top, int left, int h, int w) {
+        int[] d = new int[h * w];
+        for (long p: missing) {
+            d[(Index.rowOf(p) - top) * w + Index.colOf(p) - left] = INF;
+        }
+
+        for (int i = 0; i < h; i++) {
+            for (int j = 0; j < w; j++) {
+                int k = i * w + j;
+                if (d[k] == 0) {
+                    continue;
+                }
+                int m = d[k];
+                if (j > 0) m = Math.min(m, d[k - 1] + 1);
+                if (i > 0) {
+                    m = Math.min(m, d[k - w] + 1);
+                    if (j > 0) m = Math.min(m, d[k - w - 1] + 1);
+                    if (j < w - 1) m = Math.min(m, d[k - w + 1] + 1);
+                }
+                d[k] = m;
+            }
+        }
+        for (int i = h - 1; i >= 0; i--) {
+            for (int j = w - 1; j >= 0; j--) {
+                int k = i * w + j;
+                if (d[k] == 0) {
+                    continue;
+                }
+                int m = d[k];
+                if (j < w - 1) m = Math.min(m, d[k + 1] + 1);
+                if (i < h - 1) {
+                    m = Math.min(m, d[k + w] + 1);
+                    if (j < w - 1) m = Math.min(m, d[k + w + 1] + 1);
+                    if (j > 0) m = Math.min(m, d[k + w - 1] + 1);
+                }
+                d[k] = m;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,34 @@
+/**
+ * a weights function for the algorithm in section 2, on primitive coordinates: the weight of a boundary pixel
+ * for a missing pixel. see Utils.fillHole(Raster r, Hole hole, WeightKernel kernel, int parallelism)
+ *
+ * the default weights function of section 2 is DefaultWeightKernel, and a weights function which is given as
+ * BiFunction<Index, Index[], MatOfDouble> is adapted by BiFunctionWeightKernel
+ */
+public interface WeightKernel {
+
+    /**
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param boundaryRow row of the boundary pixel
+     * @param boundaryCol col of the boundary pixel
+     * @return the weight of the boundary pixel
+     */
+    double weight(int row, int col, int boundaryRow, int boundaryCol);
+
+    /**
+     * sets the weights of n boundary pixels for a missing pixel. the fill engine calls this method for every
+     * missing pixel, with the same boundary arrays, so a kernel may override it with a faster loop
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @param boundaryRows rows of the boundary pixels
+     * @param boundaryCols cols of the boundary pixels
+     * @param n number of boundary pixels
+     * @param out array of at least n weights to set
+     */
+    default void weights(int row, int col, int[] boundaryRows, int[] boundaryCols, int n, double[] out) {
+        for (int i = 0; i < n; i++) {
+            out[i] = weight(row, col, boundaryRows[i], boundaryCols[i]);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * a lookup table of the default weights function of section 2, indexed by the offset between the missing pixel
+ * and the boundary pixel.
+ *
+ * the weight 1 / (d^z + eps) depends only on the offset (dr, dc) and on z and eps, and it's symmetric,
+ * so only the quadrant of non negative offsets is stored: weight(dr, dc) = table[|dr| * (maxCol + 1) + |dc|].
+ *
+ * tables are cached by (z, eps) and reused across missing pixels, holes and images. when a bigger extent is needed,
+ * the table is rebuilt to cover both extents, or only the new one if both don't fit, and the least recently used
+ * tables are evicted to keep the total size under Defs.WEIGHT_TABLE_MAX_ENTRIES
+ */
+public class WeightTable {
+    private final double[] weights;
+    private final int maxRow;
+    private final int maxCol;
+
+    // cached tables by their key (z and eps), in access order
+    private static final LinkedHashMap<String, WeightTable> cache = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cachedEntries = 0;
+
+    private WeightTable(int z, double eps, int maxRow, int maxCol) {
+        this.maxRow = maxRow;
+        this.maxCol = maxCol;
+        weights = new double[(maxRow + 1) * (maxCol + 1)];
+        for (int dr = 0; dr <= maxRow; dr++) {
+            for (int dc = 0; dc <= maxCol; dc++) {
+                weights[dr * (maxCol + 1) + dc] = 1.0 / (Utils.distPow(dr * dr + dc * dc, z) + eps);
+            }
+        }
+    }
+
+    /**
+     * returns a table which covers all the offsets up to (maxRow, maxCol) for the given z and eps,
+     * or null in case such a table would be bigger than Defs.WEIGHT_TABLE_MAX_ENTRIES
+     * @param z configurable argument as specifies in the task description
+     * @param eps configurable argument as specifies in the task description
+     * @param maxRow the largest absolute row offset which will be looked up
+     * @param maxCol the largest absolute col offset which will be looked up
+     * @return WeightTable or null
+     */
+    public static synchronized WeightTable get(int z, double eps, int maxRow, int maxCol) {
+        String key = z + "," + Double.doubleToLongBits(eps);
+        WeightTable t = cache.get(key);
+        if (t != null && t.maxRow >= maxRow && t.maxCol >= maxCol) {
+            return t;
+        }
+
+        // grow the cached table, so it keeps covering the extents it was built for, unless the merged table would
+        // be too big, then it's replaced by a table of the requested extents (e.g a wide table by a tall one)
+        if (t != null && (long) (Math.max(maxRow, t.maxRow) + 1) * (Math.max(maxCol, t.maxCol) + 1) <=
+                Defs.WEIGHT_TABLE_MAX_ENTRIES) {
+            maxRow = Math.max(maxRow, t.maxRow);
+            maxCol = Math.max(maxCol, t.maxCol);
+        }
+        long entries = (long) (maxRow + 1) * (maxCol + 1);
+        if (entries > Defs.WEIGHT_TABLE_MAX_ENTRIES) {
+            return null;
+        }
+
+        if (t != null) {
+            cache.remove(key);
+            cachedEntries -= t.weights.length;
+        }
+        Iterator<Map.Entry<String, WeightTable>> it = cache.entrySet().iterator();
+        while (cachedEntries + entries > Defs.WEIGHT_TABLE_MAX_ENTRIES && it.hasNext()) {
+            cachedEntries -= it.next().getValue().weights.length;
+            it.remove();
+        }
+
+        t = new WeightTable(z, eps, maxRow, maxCol);
+        cache.put(key, t);
+        cachedEntries += entries;
+        return t;
+    }
+
+    /**
+     * @param dr row offset, its absolute value must not exceed the extent the table was requested for
+     * @param dc col offset, its absolute value must not exceed the extent the table was requested for
+     * @return the weight of a boundary pixel in the given offset from the missing pixel
+     */
+    public double weight(int dr, int dc) {
+        return weights[Math.abs(dr) * (maxCol + 1) + Math.abs(dc)];
+    }
+
+    /**
+     * the value of a missing pixel according to the formula in section 2, same as
+     * Utils.getPixelFilling(BoundarySamples b, int row, int col, int z, double eps), with the weights taken from
+     * this table
+     * @param b the boundary pixels of the hole
+     * @param row row of the missing pixel
+     * @param col col of the missing pixel
+     * @return the value to fill the missing pixel with
+     */
+    public double getPixelFilling(BoundarySamples b, int row, int col) {
+        int[] rows = b.getRows();
+        int[] cols = b.getCols();
+        double[] values = b.getValues();
+        int width = maxCol + 1;
+
+        double sum = 0;
+        double weightsSum = 0;
+        for (int i = 0; i < values.length; i++) {
+            double w = weights[Math.abs(rows[i] - row) * width + Math.abs(cols[i] - col)];
+            sum += w * values[i];
+            weightsSum += w;
+        }
+        return sum / weightsSum;
+    }
+}